@@ -0,0 +1,100 @@
+package database;
+
+import model.Movie;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading movies.csv with commons-csv against CsvSnapshotReader
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvLoadBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private File csv;
+
+    @Setup
+    public void writeCsv() throws IOException {
+        csv = File.createTempFile("movies", ".csv");
+        try (CSVPrinter printer = new CSVPrinter(new FileWriter(csv, false),
+                CSVFormat.DEFAULT.withHeader("barcode", "title", "genre", "releaseDate", "quantity", "cost"))) {
+            for (int i = 0; i < rows; i++) {
+                printer.printRecord("BC" + i, "Movie, Part " + i, "Action", "2021-01-01", i % 50, 4.99 + i % 10);
+            }
+        }
+    }
+
+    @TearDown
+    public void deleteCsv() {
+        csv.delete();
+    }
+
+    @Benchmark
+    public Map<String, Movie> commonsCsv(Blackhole blackhole) throws IOException {
+        Map<String, Movie> movies = new HashMap<>();
+        try (CSVParser parser = new CSVParser(new FileReader(csv),
+                CSVFormat.DEFAULT.withHeader("barcode", "title", "genre", "releaseDate", "quantity", "cost")
+                        .withSkipHeaderRecord())) {
+            for (CSVRecord record : parser) {
+                Movie movie = new Movie();
+                movie.setBarcode(record.get("barcode"));
+                movie.setTitle(record.get("title"));
+                movie.setGenre(record.get("genre"));
+                movie.setReleaseDate(record.get("releaseDate"));
+                // the quantity isn't kept, consume it so its parsing isn't optimised away
+                blackhole.consume(Integer.parseInt(record.get("quantity")));
+                movie.setPrice(Double.parseDouble(record.get("cost")));
+                movies.put(movie.getBarcode(), movie);
+            }
+        }
+        return movies;
+    }
+
+    @Benchmark
+    public Map<String, Movie> snapshotReader(Blackhole blackhole) throws IOException {
+        Map<String, Movie> movies = new HashMap<>();
+        CsvSnapshotReader reader = new CsvSnapshotReader(csv.getPath());
+        reader.nextRow();
+        while (reader.nextRow()) {
+            Movie movie = new Movie();
+            movie.setBarcode(reader.readString());
+            movie.setTitle(reader.readString());
+            movie.setGenre(reader.readString());
+            movie.setReleaseDate(reader.readString());
+            blackhole.consume(reader.readInt());
+            movie.setPrice(reader.readDouble());
+            movies.put(movie.getBarcode(), movie);
+        }
+        return movies;
+    }
+}
@@ -2,6 +2,7 @@ package controllers;
 
 import model.Cart;
 import model.Movie;
+import model.MovieFilter;
 import model.User;
 import services.MovieService;
 import services.UserService;
@@ -10,14 +11,22 @@ import view.dialogs.AddMovieDialog;
 import view.dialogs.EditMovieDialog;
 import view.shoppanels.StorePanel;
 
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class StoreController implements ActionListener {
+public class StoreController implements ActionListener, DocumentListener {
+
+    private static final int SEARCH_RESULTS = 200;
+
+    private static final int FUZZY_RESULTS = 10;
+
+    private static final int SUGGESTIONS = 8;
 
     private final StorePanel view;
     private final MovieService movieService;
@@ -31,19 +40,34 @@ public class StoreController implements ActionListener {
 
     private void searchTitle() {
         Map<Movie,Integer> result;
-        result = movieService.getMovieByTitle(view.getSearchInput().getText());
+        // whole words ranked by relevance first, then any part of a title
+        result = movieService.searchMovies(view.getSearchInput().getText(), SEARCH_RESULTS);
+        if (result.isEmpty()) {
+            result = movieService.getMovieByTitle(view.getSearchInput().getText());
+        }
+        if (result.isEmpty()) {
+            // fall back to the closest titles in case the title was misspelt
+            result = movieService.getMoviesLikeTitle(view.getSearchInput().getText(), FUZZY_RESULTS);
+        }
         if (result.isEmpty()) {
             view.displayMessage("No movies match the desired search");
         }
         view.setTable(result);
     }
 
-    private void searchCategory() {
-        Map<Movie,Integer> result = new HashMap<>();
-        String category = (String) view.getCategoryList().getSelectedItem();
-        if (category != null) {
-            result = movieService.getMoviesByCategory(category.toLowerCase());
+    private void suggestTitles() {
+        view.showSuggestions(movieService.getTitleCompletions(view.getSearchInput().getText(), SUGGESTIONS));
+    }
+
+    private void filterCatalog() {
+        MovieFilter filter = new MovieFilter().setInStockOnly(view.isInStockOnly());
+        if (view.getGenre() != null) {
+            filter.addGenre(view.getGenre());
         }
+        if (view.getPriceBand() >= 0) {
+            filter.addPriceBand(view.getPriceBand());
+        }
+        Map<Movie,Integer> result = movieService.filterMovies(filter);
         if (result.isEmpty()) {
             view.displayMessage("No movies match the desired search");
         }
@@ -51,13 +75,11 @@ public class StoreController implements ActionListener {
     }
 
     private void searchAll() {
-        Map<Movie,Integer> result;
-        result = movieService.getAllMovies();
         view.getSearchInput().setText("");
-        if (result.isEmpty()) {
+        view.showAllMovies();
+        if (view.getTable().getRowCount() == 0) {
             view.displayMessage("No movies match the desired search");
         }
-        view.setTable(result);
     }
 
     private void addMovieToCart() {
@@ -140,8 +162,11 @@ public class StoreController implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         if (e.getActionCommand().equals("searchTitle")) {
             searchTitle();
-        } else if (e.getActionCommand().equals("comboBoxChanged")) {
-            searchCategory();
+        } else if (e.getActionCommand().equals("suggestion")) {
+            view.chooseSuggestion(((JMenuItem) e.getSource()).getText());
+            searchTitle();
+        } else if (e.getActionCommand().equals("filter")) {
+            filterCatalog();
         } else if (e.getActionCommand().equals("searchAll")) {
             searchAll();
         } else if (e.getActionCommand().equals("addMovie")) {
@@ -158,4 +183,18 @@ public class StoreController implements ActionListener {
             new AddMovieDialog();
         }
     }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        suggestTitles();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        suggestTitles();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+    }
 }
@@ -2,11 +2,9 @@ package database;
 
 import model.Address;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
-import java.io.FileReader;
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -24,10 +22,17 @@ public class AddressRepository implements DatabaseAccess, Subject {
 
     private final List<Observer> observers;
 
+    private final Journal journal;
+
+    private final SnapshotImage image;
+
     private AddressRepository(String path) {
         ADDRESS_CSV_PATH = path;
         addressDatabase = new HashMap<>();
         observers = new ArrayList<>();
+        journal = new Journal(path);
+        image = new SnapshotImage(journal, path);
+        WriteBehindFlusher.getInstance().register(this);
         loadCSV();
     }
 
@@ -44,21 +49,71 @@ public class AddressRepository implements DatabaseAccess, Subject {
 
     @Override
     public synchronized void loadCSV() {
-        try (CSVParser parser = new CSVParser(new FileReader(ADDRESS_CSV_PATH), CSVFormat.RFC4180
-                .withDelimiter(',')
-                .withHeader("username", "street", "city", "province", "postalCode"))) {
-            List<CSVRecord> records = parser.getRecords();
-            for (int i = 1; i < records.size(); i++) {
+        if (image.load(this::readImage, this::replayRecord)) {
+            return;
+        }
+        addressDatabase.clear();
+        try {
+            CsvSnapshotReader reader = new CsvSnapshotReader(ADDRESS_CSV_PATH);
+            // skip the header row
+            reader.nextRow();
+            while (reader.nextRow()) {
                 Address address = new Address();
-                address.setUsername(records.get(i).get("username"));
-                address.setLineAddress(records.get(i).get("street"));
-                address.setCity(records.get(i).get("city"));
-                address.setProvince(records.get(i).get("province"));
-                address.setPostalCode(records.get(i).get("postalCode"));
+                address.setUsername(reader.readString());
+                address.setLineAddress(reader.readString());
+                address.setCity(reader.readString());
+                address.setProvince(reader.readString());
+                address.setPostalCode(reader.readString());
                 addressDatabase.put(address.getUsername(), address);
             }
         } catch (IOException ignore) {
         }
+        journal.replay(this::replayRecord);
+    }
+
+    private void readImage(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Address address = new Address();
+            address.setUsername(SnapshotImage.readString(in));
+            address.setLineAddress(SnapshotImage.readString(in));
+            address.setCity(SnapshotImage.readString(in));
+            address.setProvince(SnapshotImage.readString(in));
+            address.setPostalCode(SnapshotImage.readString(in));
+            addressDatabase.put(address.getUsername(), address);
+        }
+    }
+
+    @Override
+    public synchronized void saveImage() {
+        image.save(out -> {
+            out.writeInt(addressDatabase.size());
+            for (Address a : addressDatabase.values()) {
+                SnapshotImage.writeString(out, a.getUsername());
+                SnapshotImage.writeString(out, a.getLineAddress());
+                SnapshotImage.writeString(out, a.getCity());
+                SnapshotImage.writeString(out, a.getProvince());
+                SnapshotImage.writeString(out, a.getPostalCode());
+            }
+        });
+    }
+
+    /**
+     * Apply a journal record on top of the loaded snapshot
+     * @param record the journal record
+     */
+    private void replayRecord(CSVRecord record) {
+        if (record.get(0).equals(Journal.PUT)) {
+            Address address = new Address();
+            address.setUsername(record.get(1));
+            address.setLineAddress(record.get(2));
+            address.setCity(record.get(3));
+            address.setProvince(record.get(4));
+            address.setPostalCode(record.get(5));
+            addressDatabase.put(address.getUsername(), address);
+        } else if (record.get(0).equals(Journal.DELETE)) {
+            addressDatabase.remove(record.get(1));
+        }
     }
 
     @Override
@@ -69,50 +124,65 @@ public class AddressRepository implements DatabaseAccess, Subject {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.truncate();
+        image.delete();
     }
 
+    /**
+     * Write the pending journal records, the snapshot is only rewritten once the journal grows too large
+     */
     @Override
     public synchronized void updateCSV() {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(ADDRESS_CSV_PATH, false),
-                CSVFormat.RFC4180.withDelimiter(',')
-                        .withHeader(
-                                "username",
-                                "street",
-                                "city",
-                                "province",
-                                "postalCode"
-                        ))) {
-            for (Map.Entry<String, Address> entry : addressDatabase.entrySet()) {
-                Address a = entry.getValue();
-                printer.printRecord(a.getUsername(), a.getLineAddress(), a.getCity(), a.getProvince(), a.getPostalCode());
-            }
-        } catch (IOException ignore) {
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(CSVFormat.RFC4180.withDelimiter(',')
+                    .withHeader(
+                            "username",
+                            "street",
+                            "city",
+                            "province",
+                            "postalCode"
+                    ), printer -> {
+                for (Map.Entry<String, Address> entry : addressDatabase.entrySet()) {
+                    Address a = entry.getValue();
+                    printer.printRecord(a.getUsername(), a.getLineAddress(), a.getCity(), a.getProvince(), a.getPostalCode());
+                }
+            });
+            saveImage();
+        } else {
+            journal.flush();
         }
     }
 
-    public boolean saveAddress(Address address) {
+    private void logPut(Address a) {
+        journal.log(Journal.PUT, a.getUsername(), a.getLineAddress(), a.getCity(), a.getProvince(), a.getPostalCode());
+        markDirty();
+    }
+
+    public synchronized boolean saveAddress(Address address) {
         if (validateAddress(address)) {
             addressDatabase.put(address.getUsername(), address);
-            updateCSV();
+            logPut(address);
             return true;
         } else {
             return false;
         }
     }
 
-    public void deleteAddress(String username) {
+    public synchronized void deleteAddress(String username) {
         addressDatabase.remove(username);
-        updateCSV();
+        journal.log(Journal.DELETE, username);
+        markDirty();
     }
 
     public Address getAddress(String username) {
         return addressDatabase.getOrDefault(username, null);
     }
 
-    public boolean updateAddress(Address address) {
+    public synchronized boolean updateAddress(Address address) {
         if (validateAddress(address)) {
-            addressDatabase.replace(address.getUsername(), address);
-            updateCSV();
+            if (addressDatabase.replace(address.getUsername(), address) != null) {
+                logPut(address);
+            }
             return true;
         } else {
             return false;
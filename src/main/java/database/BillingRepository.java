@@ -2,12 +2,10 @@ package database;
 
 import model.payments.CreditCard;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import view.StoreFront;
 
-import java.io.FileReader;
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -25,10 +23,17 @@ public class BillingRepository implements DatabaseAccess, Subject {
 
     private static String BILLING_CSV_PATH;
 
+    private final Journal journal;
+
+    private final SnapshotImage image;
+
     private BillingRepository(String path) {
         BILLING_CSV_PATH = path;
         billingDatabase = new HashMap<>();
         observers = new ArrayList<>();
+        journal = new Journal(path);
+        image = new SnapshotImage(journal, path);
+        WriteBehindFlusher.getInstance().register(this);
         loadCSV();
     }
 
@@ -45,42 +50,96 @@ public class BillingRepository implements DatabaseAccess, Subject {
 
     @Override
     public synchronized void loadCSV() {
-        try (CSVParser parser = new CSVParser(new FileReader(BILLING_CSV_PATH), CSVFormat.RFC4180
-                .withDelimiter(',')
-                .withHeader("username","cardNumber","expiry","csv","balance"))) {
-            List<CSVRecord> records = parser.getRecords();
-            for (int i = 1; i < records.size(); i++) {
+        if (image.load(this::readImage, this::replayRecord)) {
+            return;
+        }
+        billingDatabase.clear();
+        try {
+            CsvSnapshotReader reader = new CsvSnapshotReader(BILLING_CSV_PATH);
+            // skip the header row
+            reader.nextRow();
+            while (reader.nextRow()) {
                 CreditCard card = new CreditCard();
-                card.setUsername(records.get(i).get("username"));
-                card.setCardNumber(records.get(i).get("cardNumber"));
-                card.setExpiry(records.get(i).get("expiry"));
-                card.setCsv(records.get(i).get("csv"));
-                card.setBalance(Double.parseDouble(records.get(i).get("balance")));
+                card.setUsername(reader.readString());
+                card.setCardNumber(reader.readString());
+                card.setExpiry(reader.readString());
+                card.setCsv(reader.readString());
+                card.setBalance(reader.readDouble());
                 billingDatabase.put(card.getUsername(), card);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.replay(this::replayRecord);
+    }
+
+    private void readImage(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            CreditCard card = new CreditCard();
+            card.setUsername(SnapshotImage.readString(in));
+            card.setCardNumber(SnapshotImage.readString(in));
+            card.setExpiry(SnapshotImage.readString(in));
+            card.setCsv(SnapshotImage.readString(in));
+            card.setBalance(in.readDouble());
+            billingDatabase.put(card.getUsername(), card);
+        }
     }
 
+    @Override
+    public synchronized void saveImage() {
+        image.save(out -> {
+            out.writeInt(billingDatabase.size());
+            for (CreditCard c : billingDatabase.values()) {
+                SnapshotImage.writeString(out, c.getUsername());
+                SnapshotImage.writeString(out, c.getCardNumber());
+                SnapshotImage.writeString(out, c.getExpiry());
+                SnapshotImage.writeString(out, c.getCsv());
+                out.writeDouble(c.getBalance());
+            }
+        });
+    }
+
+    /**
+     * Apply a journal record on top of the loaded snapshot
+     * @param record the journal record
+     */
+    private void replayRecord(CSVRecord record) {
+        if (record.get(0).equals(Journal.PUT)) {
+            CreditCard card = new CreditCard();
+            card.setUsername(record.get(1));
+            card.setCardNumber(record.get(2));
+            card.setExpiry(record.get(3));
+            card.setCsv(record.get(4));
+            card.setBalance(Double.parseDouble(record.get(5)));
+            billingDatabase.put(card.getUsername(), card);
+        } else if (record.get(0).equals(Journal.DELETE)) {
+            billingDatabase.remove(record.get(1));
+        }
+    }
+
+    /**
+     * Write the pending journal records, the snapshot is only rewritten once the journal grows too large
+     */
     @Override
     public synchronized void updateCSV() {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(BILLING_CSV_PATH, false),
-            CSVFormat.RFC4180.withDelimiter(',')
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(CSVFormat.RFC4180.withDelimiter(',')
                     .withHeader(
                             "username",
                             "cardNumber",
                             "expiry",
                             "csv",
                             "balance"
-                    ))) {
-            for (Map.Entry<String,CreditCard> entry : billingDatabase.entrySet()) {
-                CreditCard c = entry.getValue();
-                printer.printRecord(c.getUsername(), c.getCardNumber(), c.getExpiry(), c.getCsv(), c.getBalance());
-            }
-            notifyObservers();
-        } catch (IOException e) {
-            e.printStackTrace();
+                    ), printer -> {
+                for (Map.Entry<String,CreditCard> entry : billingDatabase.entrySet()) {
+                    CreditCard c = entry.getValue();
+                    printer.printRecord(c.getUsername(), c.getCardNumber(), c.getExpiry(), c.getCsv(), c.getBalance());
+                }
+            });
+            saveImage();
+        } else {
+            journal.flush();
         }
     }
 
@@ -92,43 +151,53 @@ public class BillingRepository implements DatabaseAccess, Subject {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.truncate();
+        image.delete();
+    }
+
+    private void logPut(CreditCard c) {
+        journal.log(Journal.PUT, c.getUsername(), c.getCardNumber(), c.getExpiry(), c.getCsv(), c.getBalance());
+        markDirty();
+        notifyObservers();
     }
 
     public CreditCard getCreditCard(String username) {
         return billingDatabase.get(username);
     }
 
-    public boolean saveCreditCard(CreditCard c) {
+    public synchronized boolean saveCreditCard(CreditCard c) {
         if (validateCreditCard(c)) {
             billingDatabase.put(c.getUsername(), c);
-            updateCSV();
+            logPut(c);
             return true;
         } else {
             return false;
         }
     }
 
-    public void deleteCreditCard(String username) {
+    public synchronized void deleteCreditCard(String username) {
         billingDatabase.remove(username);
+        journal.log(Journal.DELETE, username);
+        markDirty();
     }
 
-    public boolean updateCreditCard(CreditCard c) {
+    public synchronized boolean updateCreditCard(CreditCard c) {
         if (validateCreditCard(c)) {
             billingDatabase.replace(c.getUsername(), c);
-            updateCSV();
+            logPut(c);
             return true;
         } else {
             return false;
         }
     }
 
-    public void refundCustomer(String username, double amount) {
+    public synchronized void refundCustomer(String username, double amount) {
         CreditCard c = billingDatabase.get(username);
         c.refund(amount);
         updateCreditCard(c);
     }
 
-    public void chargeCustomer(String username, double amount) {
+    public synchronized void chargeCustomer(String username, double amount) {
         CreditCard c = billingDatabase.get(username);
         c.charge(amount);
         updateCreditCard(c);
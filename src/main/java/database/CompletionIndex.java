@@ -0,0 +1,236 @@
+package database;
+
+import model.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefix trie over the words of every title, and over each whole title, for search-as-you-type.
+ * Every node caches the most rented movies found under it, so a completion only walks the prefix. A change
+ * marks the nodes on its path stale, and they are rebuilt from their children's caches the next time a
+ * completion passes through them.
+ * Completions are read under the catalog read lock while checkouts update popularity without it, so unlike
+ * the other indexes this one synchronizes itself.
+ */
+public class CompletionIndex implements MovieIndex {
+
+    static final int MAX_COMPLETIONS = 10;
+
+    private static final String[] NONE = new String[0];
+
+    private static final class Node {
+
+        // children sorted by their character, for binary search
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+
+        // movies with a key ending at this node
+        private Set<String> barcodes;
+
+        private String[] top = NONE;
+        private boolean stale;
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        private Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            char[] grownKeys = new char[keys.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, grownKeys, 0, i);
+            System.arraycopy(children, 0, grownChildren, 0, i);
+            System.arraycopy(keys, i, grownKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, grownChildren, i + 1, children.length - i);
+            grownKeys[i] = c;
+            grownChildren[i] = new Node();
+            keys = grownKeys;
+            children = grownChildren;
+            return grownChildren[i];
+        }
+    }
+
+    private Node root;
+
+    private final Map<String, List<String>> keysByBarcode;
+
+    private final Map<String, Integer> popularity;
+
+    private final Comparator<String> byPopularity;
+
+    public CompletionIndex() {
+        root = new Node();
+        keysByBarcode = new HashMap<>();
+        popularity = new HashMap<>();
+        byPopularity = Comparator.<String>comparingInt(b -> popularity.getOrDefault(b, 0)).reversed()
+                .thenComparing(Comparator.naturalOrder());
+    }
+
+    @Override
+    public synchronized void add(Movie movie) {
+        if (movie.getTitle() == null) {
+            return;
+        }
+        List<String> keys = keys(movie.getTitle());
+        keysByBarcode.put(movie.getBarcode(), keys);
+        for (String key : keys) {
+            Node node = root;
+            node.stale = true;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+                node.stale = true;
+            }
+            if (node.barcodes == null) {
+                node.barcodes = new HashSet<>();
+            }
+            node.barcodes.add(movie.getBarcode());
+        }
+    }
+
+    @Override
+    public synchronized void remove(Movie movie) {
+        List<String> keys = keysByBarcode.remove(movie.getBarcode());
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Node node = markPath(key);
+            if (node != null && node.barcodes != null) {
+                node.barcodes.remove(movie.getBarcode());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        root = new Node();
+        keysByBarcode.clear();
+    }
+
+    /**
+     * Replace the popularity of every movie
+     * @param rentals copies rented by barcode
+     */
+    public synchronized void setPopularity(Map<String, Integer> rentals) {
+        popularity.clear();
+        popularity.putAll(rentals);
+        markAll(root);
+    }
+
+    /**
+     * @param barcode the barcode of the movie
+     * @param copies how many more copies were rented
+     */
+    public synchronized void addPopularity(String barcode, int copies) {
+        popularity.merge(barcode, copies, Integer::sum);
+        List<String> keys = keysByBarcode.get(barcode);
+        if (keys != null) {
+            for (String key : keys) {
+                markPath(key);
+            }
+        }
+    }
+
+    /**
+     * @param prefix the start of a word in the title, or of the whole title, in any case
+     * @param limit the most completions to return, at most MAX_COMPLETIONS
+     * @return barcodes of the most rented movies matching the prefix, most rented first
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        String key = TitleIndex.normalize(prefix).trim().replaceAll("\\s+", " ");
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) {
+            return new ArrayList<>();
+        }
+        refresh(node);
+        return new ArrayList<>(Arrays.asList(node.top).subList(0, Math.min(limit, node.top.length)));
+    }
+
+    /**
+     * Rebuild every stale cache now, so the first keystroke after a load doesn't pay for it
+     */
+    public synchronized void refresh() {
+        refresh(root);
+    }
+
+    private void refresh(Node node) {
+        if (!node.stale) {
+            return;
+        }
+        Set<String> candidates = new LinkedHashSet<>();
+        if (node.barcodes != null) {
+            candidates.addAll(node.barcodes);
+        }
+        for (Node child : node.children) {
+            refresh(child);
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        node.top = best(candidates);
+        node.stale = false;
+    }
+
+    private String[] best(Collection<String> candidates) {
+        List<String> sorted = new ArrayList<>(candidates);
+        sorted.sort(byPopularity);
+        return sorted.subList(0, Math.min(MAX_COMPLETIONS, sorted.size())).toArray(NONE);
+    }
+
+    /**
+     * @return the node the key ends at, or null if it isn't in the trie
+     */
+    private Node markPath(String key) {
+        Node node = root;
+        node.stale = true;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+            if (node != null) {
+                node.stale = true;
+            }
+        }
+        return node;
+    }
+
+    private static void markAll(Node node) {
+        node.stale = true;
+        for (Node child : node.children) {
+            markAll(child);
+        }
+    }
+
+    /**
+     * @return every word of the title and the whole title, lower case
+     */
+    private static List<String> keys(String title) {
+        String normalized = TitleIndex.normalize(title).trim().replaceAll("\\s+", " ");
+        Set<String> keys = new LinkedHashSet<>();
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                keys.add(word);
+            }
+        }
+        if (!normalized.isEmpty()) {
+            keys.add(normalized);
+        }
+        return new ArrayList<>(keys);
+    }
+}
@@ -0,0 +1,347 @@
+package database;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of non-negative ints stored Roaring style.
+ * Values are split on their high 16 bits into containers of up to 65536 values. A sparse container is a sorted
+ * array of the low 16 bits, a dense one is a 65536 bit bitset, and containers switch form as they cross 4096
+ * values, so a container never takes more than 8KB and AND/OR work container by container.
+ */
+public class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITSET_WORDS = 1024;
+
+    private static final class Container {
+
+        // sorted low bits while sparse, null once dense
+        private char[] array;
+        private long[] bits;
+        private int cardinality;
+
+        private static Container sparse(int capacity) {
+            Container c = new Container();
+            c.array = new char[Math.max(4, capacity)];
+            return c;
+        }
+
+        private static Container dense() {
+            Container c = new Container();
+            c.bits = new long[BITSET_WORDS];
+            return c;
+        }
+
+        private boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+
+        private boolean add(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before | (1L << low);
+                if (before == bits[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int i = Arrays.binarySearch(array, 0, cardinality, low);
+            if (i >= 0) {
+                return false;
+            }
+            i = -i - 1;
+            if (cardinality == ARRAY_MAX) {
+                toDense();
+                return add(low);
+            }
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, array.length * 2));
+            }
+            System.arraycopy(array, i, array, i + 1, cardinality - i);
+            array[i] = low;
+            cardinality++;
+            return true;
+        }
+
+        private boolean remove(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before & ~(1L << low);
+                if (before == bits[low >>> 6]) {
+                    return false;
+                }
+                cardinality--;
+                // well below the point where add() goes dense, so alternating adds and removes at the
+                // boundary don't convert the container back and forth
+                if (cardinality <= ARRAY_MAX / 2) {
+                    toSparse();
+                }
+                return true;
+            }
+            int i = Arrays.binarySearch(array, 0, cardinality, low);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(array, i + 1, array, i, cardinality - i - 1);
+            cardinality--;
+            return true;
+        }
+
+        private void toDense() {
+            long[] dense = new long[BITSET_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                dense[array[i] >>> 6] |= 1L << array[i];
+            }
+            bits = dense;
+            array = null;
+        }
+
+        private void toSparse() {
+            char[] sparse = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < BITSET_WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    sparse[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            array = sparse;
+            bits = null;
+        }
+
+        private Container and(Container other) {
+            if (bits != null && other.bits != null) {
+                Container c = dense();
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    c.bits[w] = bits[w] & other.bits[w];
+                    c.cardinality += Long.bitCount(c.bits[w]);
+                }
+                if (c.cardinality <= ARRAY_MAX) {
+                    c.toSparse();
+                }
+                return c;
+            }
+            if (bits != null) {
+                return other.and(this);
+            }
+            Container c = sparse(cardinality);
+            if (other.bits != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(array[i])) {
+                        c.array[c.cardinality++] = array[i];
+                    }
+                }
+                return c;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (array[i] < other.array[j]) {
+                    i++;
+                } else if (array[i] > other.array[j]) {
+                    j++;
+                } else {
+                    c.array[c.cardinality++] = array[i];
+                    i++;
+                    j++;
+                }
+            }
+            return c;
+        }
+
+        private Container or(Container other) {
+            if (bits == null && other.bits == null && cardinality + other.cardinality <= ARRAY_MAX) {
+                Container c = sparse(cardinality + other.cardinality);
+                int i = 0;
+                int j = 0;
+                while (i < cardinality || j < other.cardinality) {
+                    if (j == other.cardinality || (i < cardinality && array[i] < other.array[j])) {
+                        c.array[c.cardinality++] = array[i++];
+                    } else if (i == cardinality || array[i] > other.array[j]) {
+                        c.array[c.cardinality++] = other.array[j++];
+                    } else {
+                        c.array[c.cardinality++] = array[i++];
+                        j++;
+                    }
+                }
+                return c;
+            }
+            Container c = copy();
+            if (c.bits == null) {
+                c.toDense();
+            }
+            other.forEach(low -> {
+                if ((c.bits[low >>> 6] & (1L << low)) == 0) {
+                    c.bits[low >>> 6] |= 1L << low;
+                    c.cardinality++;
+                }
+            });
+            if (c.cardinality <= ARRAY_MAX) {
+                c.toSparse();
+            }
+            return c;
+        }
+
+        private Container copy() {
+            Container c = new Container();
+            c.array = array == null ? null : Arrays.copyOf(array, Math.max(4, cardinality));
+            c.bits = bits == null ? null : bits.clone();
+            c.cardinality = cardinality;
+            return c;
+        }
+
+        private void forEach(IntConsumer action) {
+            if (bits != null) {
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        action.accept(w * 64 + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(array[i]);
+                }
+            }
+        }
+    }
+
+    // containers sorted by the high 16 bits of their values
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public CompressedBitmap() {
+        keys = new char[4];
+        containers = new Container[4];
+        size = 0;
+    }
+
+    public boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /**
+     * @param value a non-negative int
+     * @return false if the value was already there
+     */
+    public boolean add(int value) {
+        char key = (char) (value >>> 16);
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, Container.sparse(4));
+        }
+        return containers[i].add((char) value);
+    }
+
+    /**
+     * @return false if the value wasn't there
+     */
+    public boolean remove(int value) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (i < 0 || !containers[i].remove((char) value)) {
+            return false;
+        }
+        if (containers[i].cardinality == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return a new bitmap of the values in both
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container c = containers[i].and(other.containers[j]);
+                if (c.cardinality > 0) {
+                    result.insert(result.size, keys[i], c);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a new bitmap of the values in either
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.insert(result.size, keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.insert(result.size, other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.insert(result.size, keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Call an action with every value, in ascending order
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            containers[i].forEach(low -> action.accept(high | low));
+        }
+    }
+
+    private void insert(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+}
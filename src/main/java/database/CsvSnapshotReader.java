@@ -0,0 +1,268 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a csv snapshot from a single heap buffer holding the whole file.
+ * The raw bytes of the file stay on the heap alongside the rows built from them until the load finishes, so the
+ * peak heap of a load is the size of the file on top of the loaded table. Reading the file in chunks would avoid
+ * that at the cost of handling fields split across chunks.
+ * The caller knows the column layout of the table and reads each field with the matching method, ints, doubles
+ * and booleans are parsed from the bytes without creating a String, so only fields kept as text are decoded.
+ * Quoted fields follow RFC4180, which is what CSVPrinter writes.
+ */
+public class CsvSnapshotReader {
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // doubles with a larger mantissa can't be parsed exactly by a single division
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final ByteBuffer buffer;
+
+    private final int limit;
+
+    private int position;
+
+    private boolean rowStarted;
+
+    public CsvSnapshotReader(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to read");
+            }
+            // read onto the heap rather than mapped, a mapping stays open until it is garbage collected and
+            // on Windows that blocks the checkpoint from renaming a new snapshot over the file
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            limit = buffer.position();
+        }
+        position = 0;
+        rowStarted = false;
+    }
+
+    /**
+     * Move to the start of the next row, skipping whatever is left of the current one and any blank lines
+     * @return false once there are no rows left
+     */
+    public boolean nextRow() {
+        if (rowStarted) {
+            skipRestOfRow();
+        }
+        rowStarted = true;
+        while (position < limit && (buffer.get(position) == CR || buffer.get(position) == LF)) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    /**
+     * @return false once every field of the current row has been read, for rows written before a column was added
+     */
+    public boolean hasField() {
+        return position < limit && buffer.get(position) != CR && buffer.get(position) != LF;
+    }
+
+    /**
+     * @return the next field decoded as text
+     */
+    public String readString() {
+        if (position < limit && buffer.get(position) == QUOTE) {
+            return readQuoted();
+        }
+        int start = position;
+        int end = fieldEnd();
+        String value = decode(start, end);
+        consumeDelimiter(end);
+        return value;
+    }
+
+    /**
+     * @return the next field parsed as an int, without decoding it
+     */
+    public int readInt() {
+        int start = position;
+        int end = fieldEnd();
+        int i = start;
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(fallback(start));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(fallback(start));
+            }
+            value = value * 10 + digit;
+        }
+        consumeDelimiter(end);
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the next field parsed as a double, without decoding it when it is a plain decimal
+     */
+    public double readDouble() {
+        int start = position;
+        int end = fieldEnd();
+        int i = start;
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                seenDigit = true;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+                    return Double.parseDouble(fallback(start));
+                }
+            } else {
+                // exponents, NaN and anything unusual go through the regular parser
+                return Double.parseDouble(fallback(start));
+            }
+        }
+        if (!seenDigit) {
+            return Double.parseDouble(fallback(start));
+        }
+        consumeDelimiter(end);
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return true if the next field is "true" ignoring case, the same as Boolean.parseBoolean
+     */
+    public boolean readBoolean() {
+        if (position < limit && buffer.get(position) == QUOTE) {
+            return Boolean.parseBoolean(readQuoted());
+        }
+        int start = position;
+        int end = fieldEnd();
+        boolean value = end - start == 4
+                && (buffer.get(start) | 0x20) == 't'
+                && (buffer.get(start + 1) | 0x20) == 'r'
+                && (buffer.get(start + 2) | 0x20) == 'u'
+                && (buffer.get(start + 3) | 0x20) == 'e';
+        consumeDelimiter(end);
+        return value;
+    }
+
+    /**
+     * Skip the next field without reading it
+     */
+    public void skipField() {
+        if (position < limit && buffer.get(position) == QUOTE) {
+            readQuoted();
+        } else {
+            consumeDelimiter(fieldEnd());
+        }
+    }
+
+    private int fieldEnd() {
+        int i = position;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == COMMA || b == CR || b == LF) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private void consumeDelimiter(int end) {
+        position = end;
+        if (position < limit && buffer.get(position) == COMMA) {
+            position++;
+        }
+    }
+
+    private void skipRestOfRow() {
+        boolean quoted = false;
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == QUOTE) {
+                quoted = !quoted;
+            } else if (!quoted && (b == CR || b == LF)) {
+                break;
+            }
+            position++;
+        }
+    }
+
+    private String fallback(int start) {
+        position = start;
+        return readString();
+    }
+
+    private String readQuoted() {
+        // skip the opening quote, a doubled quote inside the field is an escaped quote
+        int i = position + 1;
+        int start = i;
+        StringBuilder escaped = null;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == QUOTE) {
+                if (i + 1 < limit && buffer.get(i + 1) == QUOTE) {
+                    if (escaped == null) {
+                        escaped = new StringBuilder();
+                    }
+                    escaped.append(decode(start, i + 1));
+                    i += 2;
+                    start = i;
+                    continue;
+                }
+                break;
+            }
+            i++;
+        }
+        String value = decode(start, Math.min(i, limit));
+        if (escaped != null) {
+            value = escaped.append(value).toString();
+        }
+        consumeDelimiter(fieldEndAfter(Math.min(i + 1, limit)));
+        return value;
+    }
+
+    private int fieldEndAfter(int from) {
+        position = from;
+        return fieldEnd();
+    }
+
+    private String decode(int start, int end) {
+        return new String(buffer.array(), start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -20,4 +20,16 @@ public interface DatabaseAccess {
      */
     void clearCSV();
 
+    /**
+     * schedule the csv to be updated by the write-behind flusher
+     */
+    default void markDirty() {
+        WriteBehindFlusher.getInstance().markDirty(this);
+    }
+
+    /**
+     * save the in-memory state as a snapshot image so the next start can skip the csv
+     */
+    default void saveImage() {}
+
 }
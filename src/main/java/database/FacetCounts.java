@@ -0,0 +1,59 @@
+package database;
+
+import java.util.Map;
+
+/**
+ * How many movies a filter matches, and how many it would match with each value of each facet.
+ * The counts for a facet ignore what the filter selects in that facet, so the alternatives to the current
+ * selection are counted as well.
+ */
+public class FacetCounts {
+
+    private final int matches;
+
+    private final Map<String, Integer> genres;
+
+    private final Map<Integer, Integer> priceBands;
+
+    private final Map<Integer, Integer> releaseYears;
+
+    private final int inStock;
+
+    FacetCounts(int matches, Map<String, Integer> genres, Map<Integer, Integer> priceBands,
+                Map<Integer, Integer> releaseYears, int inStock) {
+        this.matches = matches;
+        this.genres = genres;
+        this.priceBands = priceBands;
+        this.releaseYears = releaseYears;
+        this.inStock = inStock;
+    }
+
+    public int getMatches() {
+        return matches;
+    }
+
+    /**
+     * @return movies by lower case genre
+     */
+    public Map<String, Integer> getGenres() {
+        return genres;
+    }
+
+    /**
+     * @return movies by index into FacetIndex.PRICE_BANDS
+     */
+    public Map<Integer, Integer> getPriceBands() {
+        return priceBands;
+    }
+
+    public Map<Integer, Integer> getReleaseYears() {
+        return releaseYears;
+    }
+
+    /**
+     * @return how many of the matches are in stock
+     */
+    public int getInStock() {
+        return inStock;
+    }
+}
@@ -0,0 +1,253 @@
+package database;
+
+import model.Movie;
+import model.MovieFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compressed bitmaps over movie ordinals for each genre, price band and release year, and for the movies in
+ * stock. A filter ORs the bitmaps of the values it selects in a facet and ANDs the facets together.
+ * Stock changes arrive from checkouts without the catalog lock, so like the completion index this one
+ * synchronizes itself, and it reads the stock counter while holding its own lock so the last update wins.
+ */
+public class FacetIndex implements MovieIndex {
+
+    // lower bounds of every price band but the first, which starts at zero
+    public static final double[] PRICE_BANDS = {5, 10, 15, 20};
+
+    private final ToIntFunction<String> stock;
+
+    private final Map<String, Integer> ordinals;
+
+    private final List<String> barcodes;
+
+    private final CompressedBitmap all;
+
+    private final Map<String, CompressedBitmap> byGenre;
+
+    private final Map<Integer, CompressedBitmap> byPriceBand;
+
+    private final Map<Integer, CompressedBitmap> byYear;
+
+    private final CompressedBitmap inStock;
+
+    /**
+     * @param stock the current stock of a movie by barcode
+     */
+    public FacetIndex(ToIntFunction<String> stock) {
+        this.stock = stock;
+        ordinals = new HashMap<>();
+        barcodes = new ArrayList<>();
+        all = new CompressedBitmap();
+        byGenre = new HashMap<>();
+        byPriceBand = new TreeMap<>();
+        byYear = new TreeMap<>();
+        inStock = new CompressedBitmap();
+    }
+
+    @Override
+    public synchronized void add(Movie movie) {
+        Integer ordinal = ordinals.get(movie.getBarcode());
+        if (ordinal == null) {
+            ordinal = barcodes.size();
+            ordinals.put(movie.getBarcode(), ordinal);
+            barcodes.add(movie.getBarcode());
+        }
+        all.add(ordinal);
+        if (movie.getGenre() != null) {
+            byGenre.computeIfAbsent(normalize(movie.getGenre()), k -> new CompressedBitmap()).add(ordinal);
+        }
+        byPriceBand.computeIfAbsent(priceBand(movie.getPrice()), k -> new CompressedBitmap()).add(ordinal);
+        Integer year = ReleaseDates.year(movie.getReleaseDate());
+        if (year != null) {
+            byYear.computeIfAbsent(year, k -> new CompressedBitmap()).add(ordinal);
+        }
+        refreshStock(ordinal, movie.getBarcode());
+    }
+
+    @Override
+    public synchronized void remove(Movie movie) {
+        Integer ordinal = ordinals.get(movie.getBarcode());
+        if (ordinal == null || !all.remove(ordinal)) {
+            return;
+        }
+        if (movie.getGenre() != null) {
+            removeFrom(byGenre, normalize(movie.getGenre()), ordinal);
+        }
+        removeFrom(byPriceBand, priceBand(movie.getPrice()), ordinal);
+        Integer year = ReleaseDates.year(movie.getReleaseDate());
+        if (year != null) {
+            removeFrom(byYear, year, ordinal);
+        }
+        inStock.remove(ordinal);
+    }
+
+    @Override
+    public synchronized void clear() {
+        ordinals.clear();
+        barcodes.clear();
+        all.clear();
+        byGenre.clear();
+        byPriceBand.clear();
+        byYear.clear();
+        inStock.clear();
+    }
+
+    /**
+     * Bring the in-stock bitmap up to date after stock changes
+     * @param changed the barcodes whose stock changed
+     */
+    public synchronized void refreshStock(Collection<String> changed) {
+        for (String barcode : changed) {
+            Integer ordinal = ordinals.get(barcode);
+            if (ordinal != null && all.contains(ordinal)) {
+                refreshStock(ordinal, barcode);
+            }
+        }
+    }
+
+    /**
+     * Bring the in-stock bitmap up to date for every movie, after the stock was loaded
+     */
+    public synchronized void refreshStock() {
+        all.forEach(ordinal -> refreshStock(ordinal, barcodes.get(ordinal)));
+    }
+
+    /**
+     * @return barcodes of the movies matching the filter, in the order they were indexed
+     */
+    public synchronized List<String> filter(MovieFilter filter) {
+        List<String> matches = new ArrayList<>();
+        and(all, genres(filter), priceBands(filter), releaseYears(filter), inStock(filter))
+                .forEach(ordinal -> matches.add(barcodes.get(ordinal)));
+        return matches;
+    }
+
+    public synchronized FacetCounts count(MovieFilter filter) {
+        CompressedBitmap genres = genres(filter);
+        CompressedBitmap priceBands = priceBands(filter);
+        CompressedBitmap releaseYears = releaseYears(filter);
+        CompressedBitmap stocked = inStock(filter);
+        return new FacetCounts(
+                and(all, genres, priceBands, releaseYears, stocked).cardinality(),
+                countEach(byGenre, and(all, priceBands, releaseYears, stocked)),
+                countEach(byPriceBand, and(all, genres, releaseYears, stocked)),
+                countEach(byYear, and(all, genres, priceBands, stocked)),
+                and(all, genres, priceBands, releaseYears, inStock).cardinality());
+    }
+
+    /**
+     * @return the index into PRICE_BANDS of the band the price falls in
+     */
+    public static int priceBand(double price) {
+        int band = 0;
+        while (band < PRICE_BANDS.length && price >= PRICE_BANDS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * @param band an index into PRICE_BANDS, as returned by priceBand()
+     * @return the range of prices in the band for display, such as "$5 - $10"
+     */
+    public static String priceBandLabel(int band) {
+        if (band == 0) {
+            return "Under " + dollars(PRICE_BANDS[0]);
+        }
+        if (band == PRICE_BANDS.length) {
+            return dollars(PRICE_BANDS[band - 1]) + " and up";
+        }
+        return dollars(PRICE_BANDS[band - 1]) + " - " + dollars(PRICE_BANDS[band]);
+    }
+
+    private static String dollars(double price) {
+        return price == Math.floor(price) ? "$" + (long) price : String.format("$%.2f", price);
+    }
+
+    private void refreshStock(int ordinal, String barcode) {
+        if (stock.applyAsInt(barcode) > 0) {
+            inStock.add(ordinal);
+        } else {
+            inStock.remove(ordinal);
+        }
+    }
+
+    // null when the filter doesn't restrict the facet
+    private CompressedBitmap genres(MovieFilter filter) {
+        List<String> genres = new ArrayList<>();
+        for (String genre : filter.getGenres()) {
+            genres.add(normalize(genre));
+        }
+        return union(byGenre, genres);
+    }
+
+    private CompressedBitmap priceBands(MovieFilter filter) {
+        return union(byPriceBand, filter.getPriceBands());
+    }
+
+    private CompressedBitmap releaseYears(MovieFilter filter) {
+        return union(byYear, filter.getReleaseYears());
+    }
+
+    private CompressedBitmap inStock(MovieFilter filter) {
+        return filter.isInStockOnly() ? inStock : null;
+    }
+
+    private static <K> CompressedBitmap union(Map<K, CompressedBitmap> facet, Collection<K> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        CompressedBitmap union = new CompressedBitmap();
+        for (K value : values) {
+            CompressedBitmap bitmap = facet.get(value);
+            if (bitmap != null) {
+                union = union.or(bitmap);
+            }
+        }
+        return union;
+    }
+
+    private static CompressedBitmap and(CompressedBitmap first, CompressedBitmap... rest) {
+        CompressedBitmap result = first;
+        for (CompressedBitmap bitmap : rest) {
+            if (bitmap != null) {
+                result = result.and(bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static <K> Map<K, Integer> countEach(Map<K, CompressedBitmap> facet, CompressedBitmap within) {
+        Map<K, Integer> counts = new TreeMap<>();
+        for (Map.Entry<K, CompressedBitmap> value : facet.entrySet()) {
+            int count = value.getValue().and(within).cardinality();
+            if (count > 0) {
+                counts.put(value.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    private static <K> void removeFrom(Map<K, CompressedBitmap> facet, K value, int ordinal) {
+        CompressedBitmap bitmap = facet.get(value);
+        if (bitmap != null) {
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                facet.remove(value);
+            }
+        }
+    }
+
+    private static String normalize(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,62 @@
+package database;
+
+import model.Movie;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Barcodes of the movies in each genre, genres compared ignoring case
+ */
+public class GenreIndex implements MovieIndex {
+
+    private final Map<String, Set<String>> barcodesByGenre;
+
+    public GenreIndex() {
+        barcodesByGenre = new HashMap<>();
+    }
+
+    @Override
+    public void add(Movie movie) {
+        if (movie.getGenre() != null) {
+            barcodesByGenre.computeIfAbsent(normalize(movie.getGenre()), k -> new LinkedHashSet<>())
+                    .add(movie.getBarcode());
+        }
+    }
+
+    @Override
+    public void remove(Movie movie) {
+        if (movie.getGenre() != null) {
+            String genre = normalize(movie.getGenre());
+            Set<String> barcodes = barcodesByGenre.get(genre);
+            if (barcodes != null) {
+                barcodes.remove(movie.getBarcode());
+                if (barcodes.isEmpty()) {
+                    barcodesByGenre.remove(genre);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        barcodesByGenre.clear();
+    }
+
+    /**
+     * @param genre the genre in any case
+     * @return a read-only view of the barcodes in the genre
+     */
+    public Set<String> barcodes(String genre) {
+        Set<String> barcodes = barcodesByGenre.get(normalize(genre));
+        return barcodes == null ? Collections.emptySet() : Collections.unmodifiableSet(barcodes);
+    }
+
+    private static String normalize(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+}
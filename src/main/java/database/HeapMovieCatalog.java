@@ -0,0 +1,59 @@
+package database;
+
+import model.Movie;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the catalog in a HashMap on the heap, the default for normal sized stores.
+ */
+public class HeapMovieCatalog implements MovieCatalog {
+
+    private final Map<String, Movie> barcodeToMovieMap;
+
+    public HeapMovieCatalog() {
+        barcodeToMovieMap = new HashMap<>();
+    }
+
+    @Override
+    public Movie get(String barcode) {
+        return barcodeToMovieMap.get(barcode);
+    }
+
+    @Override
+    public boolean contains(String barcode) {
+        return barcodeToMovieMap.containsKey(barcode);
+    }
+
+    @Override
+    public boolean put(Movie movie) {
+        barcodeToMovieMap.put(movie.getBarcode(), movie);
+        return true;
+    }
+
+    @Override
+    public boolean fits(Movie movie) {
+        return true;
+    }
+
+    @Override
+    public void remove(String barcode) {
+        barcodeToMovieMap.remove(barcode);
+    }
+
+    @Override
+    public int size() {
+        return barcodeToMovieMap.size();
+    }
+
+    @Override
+    public void clear() {
+        barcodeToMovieMap.clear();
+    }
+
+    @Override
+    public Iterable<Movie> movies() {
+        return barcodeToMovieMap.values();
+    }
+}
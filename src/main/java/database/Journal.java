@@ -0,0 +1,273 @@
+package database;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of changes kept next to a csv snapshot.
+ * Each change is one small csv record, so the cost of a write is proportional to the change
+ * instead of the size of the table. The repository replays the log on top of its snapshot when loading.
+ * Once the log grows past the checkpoint threshold the snapshot is rewritten and the log truncated,
+ * which keeps recovery time bounded by the length of the log.
+ * Records logged inside a {@link Transaction} are held back until it commits and then written as one group
+ * between BEGIN and COMMIT markers. Replay skips a group that has no COMMIT, which is what a crash part way
+ * through writing it leaves behind.
+ */
+public class Journal {
+
+    public static final String PUT = "PUT";
+    public static final String DELETE = "DELETE";
+
+    private static final String BEGIN = "BEGIN";
+    private static final String COMMIT = "COMMIT";
+
+    // number of journal records after which a checkpoint of the snapshot is taken
+    private static final int CHECKPOINT_THRESHOLD = 1000;
+
+    private final String CSV_PATH;
+
+    private final String JOURNAL_PATH;
+
+    private final List<Object[]> pending;
+
+    private int size;
+
+    /**
+     * Writes every row of a table to the snapshot
+     */
+    public interface SnapshotWriter {
+        void write(CSVPrinter printer) throws IOException;
+    }
+
+    public Journal(String csvPath) {
+        CSV_PATH = csvPath;
+        JOURNAL_PATH = csvPath + ".journal";
+        pending = new ArrayList<>();
+        size = 0;
+    }
+
+    /**
+     * Buffer a record, it is written to the end of the journal on the next flush. Inside a transaction the
+     * record is staged and only buffered once the transaction commits.
+     * @param record the fields of the record
+     */
+    public synchronized void log(Object... record) {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            tx.stage(this, record);
+        } else {
+            pending.add(record);
+        }
+    }
+
+    /**
+     * Buffer the records of a committed transaction as one group, the next flush writes them in the same write
+     * @param records the records staged by the transaction
+     */
+    synchronized void logGroup(List<Object[]> records) {
+        pending.add(new Object[]{BEGIN});
+        pending.addAll(records);
+        pending.add(new Object[]{COMMIT});
+    }
+
+    /**
+     * Append every buffered record to the journal with a single write
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(JOURNAL_PATH, true);
+             CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                     CSVFormat.RFC4180)) {
+            for (Object[] record : pending) {
+                printer.printRecord(record);
+            }
+            printer.flush();
+            out.getFD().sync();
+            size += pending.size();
+            pending.clear();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rewrite the snapshot and truncate the journal. The snapshot is written to a temp file and
+     * renamed over the old one, so a crash part way through leaves the previous snapshot and journal intact.
+     * @param format the csv format of the snapshot, including its header
+     * @param writer writes every row of the table
+     */
+    public synchronized void checkpoint(CSVFormat format, SnapshotWriter writer) {
+        File tmp = new File(CSV_PATH + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp, false);
+                 CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(out, StandardCharsets.UTF_8), format)) {
+                writer.write(printer);
+                printer.flush();
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), Paths.get(CSV_PATH), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            // replaying records already in the snapshot is harmless, so a crash before this truncate loses nothing
+            truncate();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Feed every record in the journal to the consumer, oldest first
+     * @param consumer applies a record to the repository
+     */
+    public synchronized void replay(Consumer<CSVRecord> consumer) {
+        replay(consumer, 0, 0);
+    }
+
+    /**
+     * Feed the records written after an offset to the consumer, used when the state up to the offset
+     * has already been restored from a snapshot image
+     * @param consumer applies a record to the repository
+     * @param offset the length of the journal when the image was saved
+     * @param records the number of records before the offset
+     */
+    public synchronized void replay(Consumer<CSVRecord> consumer, long offset, int records) {
+        size = records;
+        if (!new File(JOURNAL_PATH).exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(JOURNAL_PATH), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.max(0, channel.size() - offset));
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, offset + tail.position()) < 0) {
+                    break;
+                }
+            }
+            String text = new String(tail.array(), StandardCharsets.UTF_8);
+            int start = 0;
+            // end of the last record outside a transaction group, and the record count up to it
+            int complete = 0;
+            int completeSize = size;
+            List<CSVRecord> group = null;
+            for (int end : recordEnds(text)) {
+                CSVRecord record;
+                try (CSVParser parser = CSVParser.parse(text.substring(start, end), CSVFormat.RFC4180)) {
+                    record = parser.iterator().next();
+                }
+                size++;
+                start = end;
+                if (BEGIN.equals(record.get(0))) {
+                    group = new ArrayList<>();
+                } else if (COMMIT.equals(record.get(0))) {
+                    if (group != null) {
+                        for (CSVRecord staged : group) {
+                            apply(consumer, staged);
+                        }
+                    }
+                    group = null;
+                } else if (group != null) {
+                    group.add(record);
+                } else {
+                    apply(consumer, record);
+                }
+                if (group == null) {
+                    complete = end;
+                    completeSize = size;
+                }
+            }
+            // a torn record or a group without its COMMIT at the tail is what a crash mid-append leaves behind.
+            // Cut it off, otherwise the next flush appends after it and an open quote in it would swallow every
+            // later record
+            size = completeSize;
+            long length = offset + text.substring(0, complete).getBytes(StandardCharsets.UTF_8).length;
+            if (length < channel.size()) {
+                System.err.println("Discarding an incomplete write at the end of " + JOURNAL_PATH);
+                channel.truncate(length);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void apply(Consumer<CSVRecord> consumer, CSVRecord record) {
+        try {
+            consumer.accept(record);
+        } catch (RuntimeException e) {
+            // a complete record the repository can't apply, the ones after it still count
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the index just past the line break ending each complete record, line breaks inside quoted
+     * fields don't end a record
+     */
+    private static List<Integer> recordEnds(String text) {
+        List<Integer> ends = new ArrayList<>();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted) {
+                ends.add(i + 1);
+            }
+        }
+        return ends;
+    }
+
+    /**
+     * Discard every record, called once the snapshot contains all the changes in the journal
+     */
+    public synchronized void truncate() {
+        try {
+            FileWriter fw = new FileWriter(JOURNAL_PATH, false);
+            fw.close();
+            pending.clear();
+            size = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the journal file, buffered records are not included
+     */
+    public synchronized long length() {
+        return new File(JOURNAL_PATH).length();
+    }
+
+    /**
+     * @return the number of records written or buffered since the last truncate
+     */
+    public synchronized int size() {
+        return size + pending.size();
+    }
+
+    /**
+     * @return true once the journal is long enough that the snapshot should be rewritten
+     */
+    public synchronized boolean needsCheckpoint() {
+        return size() >= CHECKPOINT_THRESHOLD;
+    }
+}
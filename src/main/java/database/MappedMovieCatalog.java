@@ -0,0 +1,339 @@
+package database;
+
+import model.Movie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps the catalog off the heap for very large inventories.
+ * Every movie is a fixed size record in a memory-mapped file and the barcode index is an open addressing
+ * hash table in a direct buffer, so the garbage collector never sees either of them. Movie objects are only
+ * created when a movie is read.
+ * The search indexes in MovieRepository still live on the heap and hold every barcode, and the completion and
+ * text indexes hold words of every title, so this saves the movie records but not the memory of the indexes.
+ * The file is scratch space, it is rebuilt from the csv or snapshot image every time the repository loads.
+ */
+public class MappedMovieCatalog implements MovieCatalog {
+
+    // record layout, each string is stored as up to its max length of utf-8 bytes with its length in LENGTHS
+    private static final int STATE = 0;
+    private static final int NEXT_FREE = 4;
+    private static final int PRICE = 8;
+    private static final int LENGTHS = 16;
+    private static final int BARCODE = 20;
+    private static final int MAX_BARCODE = 32;
+    private static final int TITLE = BARCODE + MAX_BARCODE;
+    private static final int MAX_TITLE = 192;
+    private static final int GENRE = TITLE + MAX_TITLE;
+    private static final int MAX_GENRE = 32;
+    private static final int RELEASE_DATE = GENRE + MAX_GENRE;
+    private static final int MAX_RELEASE_DATE = 16;
+    static final int RECORD_SIZE = 296;
+
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+
+    // an index slot holds the record number plus one, 0 marks an empty slot, followed by the barcode hash
+    private static final int SLOT_SIZE = 8;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private final FileChannel channel;
+
+    private MappedByteBuffer records;
+
+    private int capacity;
+
+    // records handed out so far, freed records are reused before this grows
+    private int used;
+
+    // first record of the free list, freed records are chained through their NEXT_FREE field
+    private int freeHead;
+
+    private int count;
+
+    private ByteBuffer index;
+
+    private int mask;
+
+    /**
+     * @param path the file the records are mapped from, its contents are discarded
+     */
+    public MappedMovieCatalog(String path) throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        capacity = INITIAL_CAPACITY;
+        records = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        resetIndex(INITIAL_CAPACITY * 2);
+        used = 0;
+        freeHead = -1;
+        count = 0;
+    }
+
+    @Override
+    public Movie get(String barcode) {
+        int record = find(barcode);
+        return record < 0 ? null : readMovie(record);
+    }
+
+    @Override
+    public boolean contains(String barcode) {
+        return find(barcode) >= 0;
+    }
+
+    @Override
+    public boolean put(Movie movie) {
+        byte[] barcode = encode(movie.getBarcode());
+        byte[] title = encode(movie.getTitle());
+        byte[] genre = encode(movie.getGenre());
+        byte[] releaseDate = encode(movie.getReleaseDate());
+        if (barcode.length > MAX_BARCODE || title.length > MAX_TITLE || genre.length > MAX_GENRE
+                || releaseDate.length > MAX_RELEASE_DATE) {
+            return false;
+        }
+        int hash = hash(barcode);
+        int slot = findSlot(barcode, hash);
+        int record;
+        if (index.getInt(slot * SLOT_SIZE) != 0) {
+            record = index.getInt(slot * SLOT_SIZE) - 1;
+        } else {
+            record = allocate();
+            index.putInt(slot * SLOT_SIZE, record + 1);
+            index.putInt(slot * SLOT_SIZE + 4, hash);
+            count++;
+            // keep the index at most half full so probe sequences stay short
+            if (count * 2 > mask + 1) {
+                resetIndex((mask + 1) * 2);
+            }
+        }
+        int base = offset(record);
+        records.put(base + STATE, LIVE);
+        records.putDouble(base + PRICE, movie.getPrice());
+        writeString(base, 0, BARCODE, barcode);
+        writeString(base, 1, TITLE, title);
+        writeString(base, 2, GENRE, genre);
+        writeString(base, 3, RELEASE_DATE, releaseDate);
+        return true;
+    }
+
+    @Override
+    public boolean fits(Movie movie) {
+        return encode(movie.getBarcode()).length <= MAX_BARCODE
+                && encode(movie.getTitle()).length <= MAX_TITLE
+                && encode(movie.getGenre()).length <= MAX_GENRE
+                && encode(movie.getReleaseDate()).length <= MAX_RELEASE_DATE;
+    }
+
+    @Override
+    public void remove(String barcode) {
+        byte[] key = encode(barcode);
+        int slot = findSlot(key, hash(key));
+        int value = index.getInt(slot * SLOT_SIZE);
+        if (value == 0) {
+            return;
+        }
+        int record = value - 1;
+        records.put(offset(record) + STATE, FREE);
+        records.putInt(offset(record) + NEXT_FREE, freeHead);
+        freeHead = record;
+        count--;
+        deleteSlot(slot);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        used = 0;
+        freeHead = -1;
+        count = 0;
+        resetIndex(INITIAL_CAPACITY * 2);
+    }
+
+    @Override
+    public Iterable<Movie> movies() {
+        return () -> new Iterator<Movie>() {
+            private int next = advance(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Movie next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                Movie movie = readMovie(next);
+                next = advance(next + 1);
+                return movie;
+            }
+        };
+    }
+
+    private int advance(int from) {
+        for (int record = from; record < used; record++) {
+            if (records.get(offset(record) + STATE) == LIVE) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private Movie readMovie(int record) {
+        int base = offset(record);
+        Movie movie = new Movie();
+        movie.setBarcode(readString(base, 0, BARCODE));
+        movie.setTitle(readString(base, 1, TITLE));
+        movie.setGenre(readString(base, 2, GENRE));
+        movie.setReleaseDate(readString(base, 3, RELEASE_DATE));
+        movie.setPrice(records.getDouble(base + PRICE));
+        return movie;
+    }
+
+    private int find(String barcode) {
+        byte[] key = encode(barcode);
+        int value = index.getInt(findSlot(key, hash(key)) * SLOT_SIZE);
+        return value - 1;
+    }
+
+    /**
+     * @return the slot holding the barcode, or the empty slot where it would be inserted
+     */
+    private int findSlot(byte[] barcode, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            int value = index.getInt(slot * SLOT_SIZE);
+            if (value == 0 || (index.getInt(slot * SLOT_SIZE + 4) == hash && barcodeEquals(value - 1, barcode))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Empty a slot and shift back any entries after it that probed past it, so lookups never stop early
+     */
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int value = index.getInt(next * SLOT_SIZE);
+            if (value == 0) {
+                break;
+            }
+            int hash = index.getInt(next * SLOT_SIZE + 4);
+            int home = hash & mask;
+            boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!stays) {
+                index.putInt(hole * SLOT_SIZE, value);
+                index.putInt(hole * SLOT_SIZE + 4, hash);
+                hole = next;
+            }
+        }
+        index.putInt(hole * SLOT_SIZE, 0);
+        index.putInt(hole * SLOT_SIZE + 4, 0);
+    }
+
+    private void resetIndex(int slots) {
+        ByteBuffer old = index;
+        int oldSlots = old == null ? 0 : mask + 1;
+        index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        mask = slots - 1;
+        for (int i = 0; i < oldSlots; i++) {
+            int value = old.getInt(i * SLOT_SIZE);
+            if (value != 0) {
+                int hash = old.getInt(i * SLOT_SIZE + 4);
+                int slot = hash & mask;
+                while (index.getInt(slot * SLOT_SIZE) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                index.putInt(slot * SLOT_SIZE, value);
+                index.putInt(slot * SLOT_SIZE + 4, hash);
+            }
+        }
+    }
+
+    private int allocate() {
+        if (freeHead >= 0) {
+            int record = freeHead;
+            freeHead = records.getInt(offset(record) + NEXT_FREE);
+            return record;
+        }
+        if (used == capacity) {
+            grow();
+        }
+        return used++;
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("movie catalog is full");
+        }
+        capacity = (int) Math.min((long) capacity * 2, MAX_CAPACITY);
+        try {
+            records = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("could not grow the movie catalog", e);
+        }
+    }
+
+    private boolean barcodeEquals(int record, byte[] barcode) {
+        int base = offset(record);
+        if ((records.get(base + LENGTHS) & 0xFF) != barcode.length) {
+            return false;
+        }
+        for (int i = 0; i < barcode.length; i++) {
+            if (records.get(base + BARCODE + i) != barcode[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeString(int base, int field, int position, byte[] value) {
+        records.put(base + LENGTHS + field, (byte) value.length);
+        ByteBuffer view = records.duplicate();
+        view.position(base + position);
+        view.put(value);
+    }
+
+    private String readString(int base, int field, int position) {
+        byte[] bytes = new byte[records.get(base + LENGTHS + field) & 0xFF];
+        ByteBuffer view = records.duplicate();
+        view.position(base + position);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int offset(int record) {
+        return record * RECORD_SIZE;
+    }
+
+    private static byte[] encode(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(byte[] bytes) {
+        // FNV-1a, then spread the bits so the low ones used for the slot depend on every byte
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
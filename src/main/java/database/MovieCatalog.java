@@ -0,0 +1,44 @@
+package database;
+
+import model.Movie;
+
+/**
+ * Storage behind MovieRepository, holding the details of every movie in the catalog keyed by barcode.
+ * Stock is kept separately in StockCounters.
+ * Implementations are not required to keep Movie objects around, a movie returned by get() may be a fresh copy.
+ * Implementations don't lock, the caller must keep put, remove and clear from running alongside any other call.
+ */
+public interface MovieCatalog {
+
+    /**
+     * @param barcode the barcode of the movie
+     * @return the movie, or null if there is none with this barcode
+     */
+    Movie get(String barcode);
+
+    boolean contains(String barcode);
+
+    /**
+     * Add a movie, replacing any movie with the same barcode
+     * @param movie the movie
+     * @return false if the catalog can't store this movie
+     */
+    boolean put(Movie movie);
+
+    /**
+     * @param movie the movie
+     * @return false if put() would reject this movie
+     */
+    boolean fits(Movie movie);
+
+    void remove(String barcode);
+
+    int size();
+
+    void clear();
+
+    /**
+     * @return every movie, read lazily where the catalog allows it
+     */
+    Iterable<Movie> movies();
+}
@@ -0,0 +1,20 @@
+package database;
+
+import model.Movie;
+
+/**
+ * A secondary index over the movie catalog.
+ * MovieRepository keeps every index current as movies are added, replaced and removed, always under its
+ * catalog write lock, and only reads an index under the read lock, so implementations don't lock.
+ */
+public interface MovieIndex {
+
+    void add(Movie movie);
+
+    /**
+     * @param movie the movie as it was when it was added
+     */
+    void remove(Movie movie);
+
+    void clear();
+}
@@ -1,21 +1,32 @@
 package database;
 
 import model.Movie;
+import model.MovieFilter;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
-import java.io.FileReader;
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
+/**
+ * Stock is held in lock-free counters, renting and returning never wait on a lock, and a cart that can't be
+ * filled puts back whatever it had already taken. Changed counters are written to the stock file by the
+ * write-behind flusher. Anything that adds, removes or rewrites a movie, or reads the whole catalog to write
+ * it out, takes the catalog lock exclusively, reads of movie details hold it shared.
+ */
 public class MovieRepository implements DatabaseAccess, Subject {
 
-    private final Map<Movie, Integer> movieDatabase;
+    // swapped for a heap catalog if a movie read from disk is too large for the mapped one
+    private MovieCatalog catalog;
 
-    private final Map<String, Movie> barcodeToMovieMap;
+    private final StockCounters stock;
 
     private volatile static MovieRepository movieRepositoryInstance;
 
@@ -23,53 +34,337 @@ public class MovieRepository implements DatabaseAccess, Subject {
 
     private final String MOVIE_CSV_PATH;
 
-    private MovieRepository(String path) {
+    private static final String STOCK = "STOCK";
+
+    // between the key and the barcode in the cursor of a range page, keys are numbers so never contain it
+    private static final char CURSOR_SEPARATOR = ':';
+
+    private final Journal journal;
+
+    private final SnapshotImage image;
+
+    private final StockFile stockFile;
+
+    // barcodes whose stock changed since the stock file was last written
+    private final Set<String> dirtyStock;
+
+    private final ReentrantReadWriteLock catalogLock;
+
+    private final GenreIndex genreIndex;
+
+    private final TitleIndex titleIndex;
+
+    private final CompletionIndex completionIndex;
+
+    private final TextIndex textIndex;
+
+    private final FacetIndex facetIndex;
+
+    // every movie by barcode, the stable order pages are read in
+    private final RangeIndex<String> barcodeIndex;
+
+    private final RangeIndex<Double> priceIndex;
+
+    // release dates as epoch days, movies with malformed dates are left out
+    private final RangeIndex<Integer> releaseIndex;
+
+    private final List<MovieIndex> indexes;
+
+    // package-private so tests can load a repository of their own
+    MovieRepository(String path, String catalogPath) {
         MOVIE_CSV_PATH = path;
-        movieDatabase = new HashMap<>();
-        barcodeToMovieMap = new HashMap<>();
-        observers = new ArrayList<>();
+        catalog = openCatalog(catalogPath);
+        stock = new StockCounters();
+        observers = new CopyOnWriteArrayList<>();
+        catalogLock = new ReentrantReadWriteLock();
+        genreIndex = new GenreIndex();
+        titleIndex = new TitleIndex(barcode -> catalog.get(barcode).getTitle());
+        completionIndex = new CompletionIndex();
+        textIndex = new TextIndex();
+        facetIndex = new FacetIndex(stock::get);
+        barcodeIndex = new RangeIndex<>(Movie::getBarcode);
+        priceIndex = new RangeIndex<>(Movie::getPrice);
+        releaseIndex = new RangeIndex<>(m -> ReleaseDates.epochDay(m.getReleaseDate()));
+        indexes = Arrays.asList(genreIndex, titleIndex, completionIndex, textIndex, facetIndex, barcodeIndex,
+                priceIndex, releaseIndex);
+        dirtyStock = ConcurrentHashMap.newKeySet();
+        journal = new Journal(path);
+        image = new SnapshotImage(journal, path);
+        stockFile = new StockFile(path);
+        WriteBehindFlusher.getInstance().register(this);
         loadCSV();
     }
 
     public static MovieRepository getInstance(String path) {
+        return getInstance(path, null);
+    }
+
+    /**
+     * @param path the path of movies.csv
+     * @param catalogPath the file to map the catalog from, or null to keep the catalog on the heap
+     */
+    public static MovieRepository getInstance(String path, String catalogPath) {
         if (movieRepositoryInstance == null) {
             synchronized (MovieRepository.class) {
                 if (movieRepositoryInstance == null) {
-                    movieRepositoryInstance = new MovieRepository(path);
+                    movieRepositoryInstance = new MovieRepository(path, catalogPath);
                 }
             }
         }
         return movieRepositoryInstance;
     }
 
+    private static MovieCatalog openCatalog(String catalogPath) {
+        if (catalogPath != null) {
+            try {
+                return new MappedMovieCatalog(catalogPath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new HeapMovieCatalog();
+    }
+
     @Override
-    public synchronized void loadCSV() {
-        try {
-            CSVParser parser = new CSVParser(new FileReader(MOVIE_CSV_PATH), CSVFormat.RFC4180
-                    .withDelimiter(',')
-                    .withHeader("barcode", "title", "genre", "releaseDate",
-                            "quantity", "cost"));
-            List<CSVRecord> records = parser.getRecords();
-            for (int i = 1; i < records.size(); i++) {
-                int quantity = Integer.parseInt(records.get(i).get("quantity"));
+    public void loadCSV() {
+        catalogLock.writeLock().lock();
+        try {
+            if (!image.load(this::readImage, this::replayRecord)) {
+                loadSnapshot();
+                journal.replay(this::replayRecord);
+            }
+            // the stock file is newer than anything else on disk
+            stockFile.load(stock::set);
+            facetIndex.refreshStock();
+            completionIndex.refresh();
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    private void loadSnapshot() {
+        catalog.clear();
+        stock.clear();
+        for (MovieIndex index : indexes) {
+            index.clear();
+        }
+        try {
+            CsvSnapshotReader reader = new CsvSnapshotReader(MOVIE_CSV_PATH);
+            // skip the header row
+            reader.nextRow();
+            while (reader.nextRow()) {
                 Movie movie = new Movie();
-                movie.setBarcode(records.get(i).get("barcode"));
-                movie.setTitle(records.get(i).get("title"));
-                movie.setPrice(Double.parseDouble(records.get(i).get("cost")));
-                movie.setReleaseDate(records.get(i).get("releaseDate"));
-                movie.setGenre(records.get(i).get("genre"));
-                movieDatabase.put(movie, quantity);
-                barcodeToMovieMap.put(movie.getBarcode(), movie);
+                movie.setBarcode(reader.readString());
+                movie.setTitle(reader.readString());
+                movie.setGenre(reader.readString());
+                movie.setReleaseDate(reader.readString());
+                int quantity = reader.readInt();
+                movie.setPrice(reader.readDouble());
+                // the catalog is keyed by barcode, a second row with the same one would replace the first
+                Movie existing = catalog.get(movie.getBarcode());
+                if (existing != null) {
+                    System.err.println("Skipping " + movie.getTitle() + ", barcode " + movie.getBarcode()
+                            + " is already used by " + existing.getTitle());
+                    continue;
+                }
+                loadMovie(movie, quantity);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void readImage(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Movie movie = new Movie();
+            movie.setBarcode(SnapshotImage.readString(in));
+            movie.setTitle(SnapshotImage.readString(in));
+            movie.setGenre(SnapshotImage.readString(in));
+            movie.setReleaseDate(SnapshotImage.readString(in));
+            int quantity = in.readInt();
+            movie.setPrice(in.readDouble());
+            loadMovie(movie, quantity);
+        }
+    }
+
     @Override
-    public synchronized void updateCSV() {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(MOVIE_CSV_PATH, false),
-                CSVFormat.RFC4180
+    public void saveImage() {
+        // stock may keep changing while the image is written, the stock file is applied on top when it is loaded
+        catalogLock.readLock().lock();
+        try {
+            image.save(out -> {
+                out.writeInt(catalog.size());
+                for (Movie movie : catalog.movies()) {
+                    SnapshotImage.writeString(out, movie.getBarcode());
+                    SnapshotImage.writeString(out, movie.getTitle());
+                    SnapshotImage.writeString(out, movie.getGenre());
+                    SnapshotImage.writeString(out, movie.getReleaseDate());
+                    out.writeInt(stock.get(movie.getBarcode()));
+                    out.writeDouble(movie.getPrice());
+                }
+            });
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a journal record on top of the loaded snapshot
+     * @param record the journal record
+     */
+    private void replayRecord(CSVRecord record) {
+        String barcode = record.get(1);
+        switch (record.get(0)) {
+            case Journal.PUT:
+                Movie movie = new Movie();
+                movie.setBarcode(barcode);
+                movie.setTitle(record.get(2));
+                movie.setGenre(record.get(3));
+                movie.setReleaseDate(record.get(4));
+                movie.setPrice(Double.parseDouble(record.get(6)));
+                loadMovie(movie, Integer.parseInt(record.get(5)));
+                break;
+            case STOCK:
+                stock.set(barcode, Integer.parseInt(record.get(2)));
+                break;
+            case Journal.DELETE:
+                removeMovie(barcode);
+                stock.remove(barcode);
+                break;
+        }
+    }
+
+    /**
+     * Put a movie read from disk. One too large for a mapped catalog moves the whole catalog onto the heap,
+     * skipping it would erase it from the csv at the next checkpoint.
+     */
+    private void loadMovie(Movie movie, int quantity) {
+        if (!catalog.fits(movie)) {
+            System.err.println("Movie " + movie.getBarcode() + " is too large for the mapped catalog, "
+                    + "keeping the catalog on the heap instead");
+            MovieCatalog heap = new HeapMovieCatalog();
+            for (Movie m : catalog.movies()) {
+                heap.put(m);
+            }
+            catalog = heap;
+        }
+        putMovie(movie, quantity);
+    }
+
+    private void putMovie(Movie movie, int quantity) {
+        if (storeMovie(movie)) {
+            stock.register(movie.getBarcode(), quantity);
+            facetIndex.refreshStock(Collections.singletonList(movie.getBarcode()));
+        } else {
+            System.err.println("Could not store movie " + movie.getBarcode() + " in the catalog");
+        }
+    }
+
+    /**
+     * Put a movie in the catalog and move it to its new place in every index
+     * @return false if the catalog can't store the movie
+     */
+    private boolean storeMovie(Movie movie) {
+        Movie old = catalog.get(movie.getBarcode());
+        if (!catalog.put(movie)) {
+            return false;
+        }
+        for (MovieIndex index : indexes) {
+            if (old != null) {
+                index.remove(old);
+            }
+            index.add(movie);
+        }
+        return true;
+    }
+
+    private void removeMovie(String barcode) {
+        Movie old = catalog.get(barcode);
+        if (old != null) {
+            catalog.remove(barcode);
+            for (MovieIndex index : indexes) {
+                index.remove(old);
+            }
+        }
+    }
+
+    /**
+     * Record a change in the journal, it is written by the write-behind flusher
+     * @param records the journal records describing the change
+     */
+    private void logChanges(List<Object[]> records) {
+        for (Object[] record : records) {
+            journal.log(record);
+        }
+        markDirty();
+    }
+
+    private void logChange(Object... record) {
+        logChanges(Collections.singletonList(record));
+    }
+
+    private Object[] putRecord(Movie movie) {
+        return new Object[]{Journal.PUT, movie.getBarcode(), movie.getTitle(), movie.getGenre(), movie.getReleaseDate(),
+                stock.get(movie.getBarcode()), movie.getPrice()};
+    }
+
+    /**
+     * Flip the movies in or out of the in-stock facet and queue their stock to be written to the stock file
+     * on the next flush
+     * @param barcodes the barcodes of the movies
+     */
+    private void stockChanged(Collection<String> barcodes) {
+        facetIndex.refreshStock(barcodes);
+        dirtyStock.addAll(barcodes);
+        markDirty();
+    }
+
+    /**
+     * Write the current stock of every changed movie to its slot in the stock file, falling back to a journal
+     * record for a movie that has no slot. The latest count is read at write time, so the order changes
+     * were made in doesn't matter.
+     */
+    private void writeStock() {
+        catalogLock.readLock().lock();
+        try {
+            for (Iterator<String> it = dirtyStock.iterator(); it.hasNext(); ) {
+                String barcode = it.next();
+                it.remove();
+                if (stock.contains(barcode) && !stockFile.write(barcode, stock.get(barcode))) {
+                    journal.log(STOCK, barcode, stock.get(barcode));
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        stockFile.force();
+    }
+
+    /**
+     * Write the changed stock and the pending journal records, the snapshot is only rewritten once the
+     * journal of catalog edits grows too large
+     */
+    @Override
+    public void updateCSV() {
+        writeStock();
+        if (journal.needsCheckpoint()) {
+            catalogLock.writeLock().lock();
+            try {
+                // any stock taken while the snapshot is written is still in dirtyStock for the next flush
+                writeSnapshot();
+                stockFile.clear();
+                saveImage();
+            } finally {
+                catalogLock.writeLock().unlock();
+            }
+        } else {
+            journal.flush();
+        }
+    }
+
+    private void writeSnapshot() {
+        journal.checkpoint(CSVFormat.RFC4180
                         .withDelimiter(',')
                         .withHeader(
                                 "barcode",
@@ -78,133 +373,394 @@ public class MovieRepository implements DatabaseAccess, Subject {
                                 "releaseDate",
                                 "quantity",
                                 "cost"
-                        ))) {
-            for (Map.Entry<Movie,Integer> entry : movieDatabase.entrySet()) {
-                Movie movie = entry.getKey();
-                printer.printRecord(movie.getBarcode(), movie.getTitle(), movie.getGenre(), movie.getReleaseDate(), entry.getValue(), movie.getPrice());
+                        ), printer -> {
+            for (Movie movie : catalog.movies()) {
+                printer.printRecord(movie.getBarcode(), movie.getTitle(), movie.getGenre(), movie.getReleaseDate(),
+                        stock.get(movie.getBarcode()), movie.getPrice());
             }
-            notifyObservers();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     @Override
-    public synchronized void clearCSV() {
+    public void clearCSV() {
+        catalogLock.writeLock().lock();
         try {
             FileWriter fw = new FileWriter(MOVIE_CSV_PATH, false);
             fw.close();
+            journal.truncate();
+            stockFile.clear();
+            dirtyStock.clear();
+            image.delete();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            catalogLock.writeLock().unlock();
         }
     }
 
 
     public boolean addMovie(Movie movie, Integer quantity) {
-        if (validateMovie(movie)) {
-            if (movieDatabase.containsKey(movie)) {
-                movieDatabase.replace(movie,movieDatabase.get(movie)+quantity);
+        if (!validateMovie(movie)) {
+            return false;
+        }
+        catalogLock.writeLock().lock();
+        try {
+            Movie existing = catalog.get(movie.getBarcode());
+            if (existing != null && !movie.equals(existing)) {
+                // a different movie under a barcode in use, replacing it would lose the one in the catalog
+                return false;
+            } else if (existing != null) {
+                stock.give(movie.getBarcode(), quantity);
             } else {
-                movieDatabase.put(movie, quantity);
-                barcodeToMovieMap.put(movie.getBarcode(), movie);
+                putMovie(movie, quantity);
             }
-            updateCSV();
-            return true;
-        } else {
-            return false;
+            logChange(putRecord(movie));
+            // the stock file overrides the quantity in the PUT on load, so it has to be kept current as well
+            stockChanged(Collections.singletonList(movie.getBarcode()));
+        } finally {
+            catalogLock.writeLock().unlock();
         }
+        notifyObservers();
+        return true;
     }
 
     public void deleteMovie(String barcode) {
-        Movie m = barcodeToMovieMap.get(barcode);
-        barcodeToMovieMap.remove(barcode);
-        movieDatabase.remove(m);
-        updateCSV();
+        catalogLock.writeLock().lock();
+        try {
+            removeMovie(barcode);
+            stock.remove(barcode);
+            stockFile.remove(barcode);
+            logChange(Journal.DELETE, barcode);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        notifyObservers();
     }
 
     public Map<Movie,Integer> getMovieByTitle(String movieTitle) {
         Map<Movie,Integer> titleMatches = new HashMap<>();
-        for (Map.Entry<Movie, Integer> entry : movieDatabase.entrySet()) {
-            Movie m = entry.getKey();
-            if (m.getTitle().toLowerCase().matches(".*" + movieTitle.toLowerCase() + ".*")) {
-                titleMatches.put(entry.getKey(), entry.getValue());
+        catalogLock.readLock().lock();
+        try {
+            for (String barcode : titleIndex.search(movieTitle)) {
+                titleMatches.put(catalog.get(barcode), stock.get(barcode));
             }
+        } finally {
+            catalogLock.readLock().unlock();
         }
         return titleMatches;
     }
 
+    /**
+     * Full-text search over title, genre and release year
+     * @param query the words to look for
+     * @param limit the most movies to return
+     * @return the best matching movies and their stock, most relevant first
+     */
+    public Map<Movie,Integer> searchMovies(String query, int limit) {
+        Map<Movie,Integer> ranked = new LinkedHashMap<>();
+        catalogLock.readLock().lock();
+        try {
+            for (String barcode : textIndex.search(query, limit)) {
+                ranked.put(catalog.get(barcode), stock.get(barcode));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        return ranked;
+    }
+
+    /**
+     * Typo tolerant title search
+     * @param movieTitle the title, possibly misspelt
+     * @param limit the most movies to return
+     * @return the movies with the most similar titles and their stock, most similar first
+     */
+    public Map<Movie,Integer> getMoviesLikeTitle(String movieTitle, int limit) {
+        Map<Movie,Integer> ranked = new LinkedHashMap<>();
+        catalogLock.readLock().lock();
+        try {
+            for (String barcode : titleIndex.fuzzySearch(movieTitle, limit)) {
+                ranked.put(catalog.get(barcode), stock.get(barcode));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        return ranked;
+    }
+
+    /**
+     * Search-as-you-type completions
+     * @param prefix the start of a word in the title, or of the whole title
+     * @param limit the most movies to return
+     * @return the most rented movies matching the prefix, most rented first
+     */
+    public List<Movie> getTitleCompletions(String prefix, int limit) {
+        List<Movie> movies = new ArrayList<>();
+        catalogLock.readLock().lock();
+        try {
+            for (String barcode : completionIndex.complete(prefix, limit)) {
+                movies.add(catalog.get(barcode));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        return movies;
+    }
+
+    /**
+     * Weigh completions by how often each movie has been rented
+     * @param rentals copies rented by barcode
+     */
+    public void setPopularity(Map<String,Integer> rentals) {
+        completionIndex.setPopularity(rentals);
+    }
+
     public Map<Movie,Integer> getAllMovies() {
-        return movieDatabase;
+        Map<Movie,Integer> movies = new HashMap<>();
+        catalogLock.readLock().lock();
+        try {
+            for (Movie m : catalog.movies()) {
+                movies.put(m, stock.get(m.getBarcode()));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        return movies;
+    }
+
+    /**
+     * @param cursor the barcode the previous page ended at, or null for the first page
+     * @param limit the page size
+     * @return a page of the catalog, by barcode
+     */
+    public Page<Movie> getMovies(String cursor, int limit) {
+        Page.checkLimit(limit);
+        Movie after = null;
+        if (cursor != null) {
+            after = new Movie();
+            after.setBarcode(cursor);
+        }
+        catalogLock.readLock().lock();
+        try {
+            // one more than asked for, to tell whether there is a next page
+            List<String> barcodes = barcodeIndex.range(null, null, after, limit + 1);
+            List<Movie> movies = new ArrayList<>();
+            for (String barcode : barcodes.subList(0, Math.min(limit, barcodes.size()))) {
+                movies.add(catalog.get(barcode));
+            }
+            String next = barcodes.size() > limit ? movies.get(movies.size() - 1).getBarcode() : null;
+            return new Page<>(movies, next, catalog.size());
+        } finally {
+            catalogLock.readLock().unlock();
+        }
     }
 
     public Map<Movie,Integer> getMoviesByCategory(String genre) {
         Map<Movie,Integer> genreMatches = new HashMap<>();
-        for (Map.Entry<Movie,Integer> entry : movieDatabase.entrySet()) {
-            Movie m = entry.getKey();
-            if (m.getGenre().equalsIgnoreCase(genre)) {
-                genreMatches.put(entry.getKey(), entry.getValue());
+        catalogLock.readLock().lock();
+        try {
+            for (String barcode : genreIndex.barcodes(genre)) {
+                genreMatches.put(catalog.get(barcode), stock.get(barcode));
             }
+        } finally {
+            catalogLock.readLock().unlock();
         }
         return genreMatches;
     }
 
+    /**
+     * @param filter the genres, price bands, release years and availability to match
+     * @return the matching movies and their stock
+     */
+    public Map<Movie,Integer> filterMovies(MovieFilter filter) {
+        Map<Movie,Integer> matches = new LinkedHashMap<>();
+        catalogLock.readLock().lock();
+        try {
+            for (String barcode : facetIndex.filter(filter)) {
+                matches.put(catalog.get(barcode), stock.get(barcode));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    /**
+     * @param min the lowest price, or null
+     * @param max the highest price, or null
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     * @return a page of the movies in the price range, cheapest first
+     */
+    public Page<Movie> getMoviesByPrice(Double min, Double max, String cursor, int limit) {
+        return getRange(priceIndex, Double::valueOf, min, max, cursor, limit);
+    }
+
+    /**
+     * @param from the earliest release date, or null
+     * @param to the latest release date, or null
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     * @return a page of the movies released in the range, oldest first
+     */
+    public Page<Movie> getMoviesReleasedBetween(LocalDate from, LocalDate to, String cursor, int limit) {
+        return getRange(releaseIndex, Integer::valueOf, from == null ? null : (int) from.toEpochDay(),
+                to == null ? null : (int) to.toEpochDay(), cursor, limit);
+    }
+
+    /**
+     * The cursor of a range page is the key and barcode of its last movie, so the next page carries on from
+     * the same place even if that movie has since been changed or deleted
+     * @param parseKey reads a key back from a cursor
+     * @throws IllegalArgumentException if the cursor wasn't made by a range page
+     */
+    private <K extends Comparable<K>> Page<Movie> getRange(RangeIndex<K> index, Function<String, K> parseKey,
+                                                           K from, K to, String cursor, int limit) {
+        Page.checkLimit(limit);
+        K afterKey = null;
+        String afterBarcode = null;
+        if (cursor != null) {
+            int split = cursor.indexOf(CURSOR_SEPARATOR);
+            if (split < 0) {
+                throw new IllegalArgumentException("not a range cursor: " + cursor);
+            }
+            try {
+                afterKey = parseKey.apply(cursor.substring(0, split));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a range cursor: " + cursor, e);
+            }
+            afterBarcode = cursor.substring(split + 1);
+        }
+        catalogLock.readLock().lock();
+        try {
+            // one more than asked for, to tell whether there is a next page
+            List<String> barcodes = index.range(from, to, afterKey, afterBarcode, limit + 1);
+            List<Movie> movies = new ArrayList<>();
+            for (String barcode : barcodes.subList(0, Math.min(limit, barcodes.size()))) {
+                movies.add(catalog.get(barcode));
+            }
+            String next = null;
+            if (barcodes.size() > limit) {
+                String last = barcodes.get(limit - 1);
+                next = String.valueOf(index.key(last)) + CURSOR_SEPARATOR + last;
+            }
+            // counting a range means walking all of it, which is what paging avoids
+            return new Page<>(movies, next, Page.UNKNOWN_TOTAL);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    public FacetCounts countFacets(MovieFilter filter) {
+        catalogLock.readLock().lock();
+        try {
+            return facetIndex.count(filter);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
     public Movie getMovie(String barcode) {
-        return barcodeToMovieMap.get(barcode);
+        catalogLock.readLock().lock();
+        try {
+            return catalog.get(barcode);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
     }
 
     public int getStockForMovie(String barcode) {
-        Movie m = barcodeToMovieMap.get(barcode);
-        if (m == null) {
-            return 0;
-        } else {
-            return movieDatabase.get(m);
-        }
+        return stock.get(barcode);
     }
 
+    /**
+     * Take every movie in the cart out of stock, or none of them if any is missing or short
+     * @param movies the movies in the cart and how many copies of each
+     * @return true if the whole cart was reserved
+     */
     public boolean rentMovies(Map<Movie,Integer> movies) {
+        Map<String,Integer> wanted = new HashMap<>();
         for (Map.Entry<Movie,Integer> entry : movies.entrySet()) {
-            if (movieDatabase.containsKey(entry.getKey())) {
-                if (entry.getValue() <= movieDatabase.get(entry.getKey())) {
-                    movieDatabase.replace(entry.getKey(), movieDatabase.get(entry.getKey()) - entry.getValue());
-                } else {
-                    return false;
-                }
+            wanted.merge(entry.getKey().getBarcode(), entry.getValue(), Integer::sum);
+        }
+        List<String> taken = new ArrayList<>();
+        for (Map.Entry<String,Integer> entry : wanted.entrySet()) {
+            if (stock.take(entry.getKey(), entry.getValue())) {
+                taken.add(entry.getKey());
             } else {
+                for (String barcode : taken) {
+                    stock.give(barcode, wanted.get(barcode));
+                }
                 return false;
             }
         }
-        updateCSV();
+        // a rental that is rolled back shouldn't count towards popularity
+        Runnable popular = () -> {
+            for (String barcode : taken) {
+                completionIndex.addPopularity(barcode, wanted.get(barcode));
+            }
+        };
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            tx.onCommit(popular);
+        } else {
+            popular.run();
+        }
+        stockChanged(taken);
+        notifyObservers(taken);
         return true;
     }
 
+    /**
+     * Put the copies of a cart back into stock, the reverse of rentMovies
+     * @param movies the movies and how many copies of each
+     */
+    public void returnMovies(Map<Movie,Integer> movies) {
+        List<String> given = new ArrayList<>();
+        for (Map.Entry<Movie,Integer> entry : movies.entrySet()) {
+            if (stock.give(entry.getKey().getBarcode(), entry.getValue())) {
+                given.add(entry.getKey().getBarcode());
+            }
+        }
+        stockChanged(given);
+        notifyObservers(given);
+    }
+
     public void returnMovie(String barcode) {
-        Movie m = barcodeToMovieMap.get(barcode);
-        movieDatabase.replace(m, movieDatabase.get(m) + 1);
-        updateCSV();
+        returnMovie(barcode, 1);
+    }
+
+    public void returnMovie(String barcode, int quantity) {
+        if (stock.give(barcode, quantity)) {
+            stockChanged(Collections.singletonList(barcode));
+            notifyObservers(Collections.singletonList(barcode));
+        }
     }
 
     public void removeStock(String barcode) {
-        Movie m = barcodeToMovieMap.get(barcode);
-        if (movieDatabase.get(m) <= 0) {
-            return;
-        } else {
-            movieDatabase.replace(m, movieDatabase.get(m)-1);
+        if (stock.take(barcode, 1)) {
+            stockChanged(Collections.singletonList(barcode));
+            notifyObservers(Collections.singletonList(barcode));
         }
-        updateCSV();
     }
 
     public boolean updateMovie(Movie movie) {
-        if (validateMovie(movie) && barcodeToMovieMap.containsKey(movie.getBarcode())) {
-            Movie oldMovie = barcodeToMovieMap.get(movie.getBarcode());
-            Integer oldMovieQuantity = movieDatabase.get(oldMovie);
-            movieDatabase.remove(oldMovie);
-            movieDatabase.put(movie, oldMovieQuantity);
-            barcodeToMovieMap.replace(movie.getBarcode(), movie);
-            updateCSV();
-            return true;
-        } else {
+        if (!validateMovie(movie)) {
             return false;
         }
+        catalogLock.writeLock().lock();
+        try {
+            if (!catalog.contains(movie.getBarcode())) {
+                return false;
+            }
+            // the stock counter is left alone so checkouts running meanwhile aren't lost
+            storeMovie(movie);
+            logChange(putRecord(movie));
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        notifyObservers(Collections.singletonList(movie.getBarcode()));
+        return true;
     }
 
     @Override
@@ -224,12 +780,25 @@ public class MovieRepository implements DatabaseAccess, Subject {
         }
     }
 
+    /**
+     * Tell observers only these movies changed, so tables repaint their rows instead of reloading
+     * @param barcodes the barcodes of the movies
+     */
+    private void notifyObservers(Collection<String> barcodes) {
+        for (Observer o : observers) {
+            for (String barcode : barcodes) {
+                o.update(barcode);
+            }
+        }
+    }
+
     private boolean validateMovie(Movie m) {
         if (m == null) {
             return false;
         } else {
             if (m.getBarcode() != null && m.getTitle() != null && m.getPrice() >= 0 && m.getGenre() != null && m.getReleaseDate() != null) {
-                return !m.getGenre().equals("") && !m.getTitle().equals("") && !m.getBarcode().equals("") && !m.getReleaseDate().equals("");
+                return !m.getGenre().equals("") && !m.getTitle().equals("") && !m.getBarcode().equals("") && !m.getReleaseDate().equals("")
+                        && catalog.fits(m);
             } else {
                 return false;
             }
@@ -4,4 +4,12 @@ public interface Observer {
 
    void update();
 
+   /**
+    * Called instead of update() when a single row changed
+    * @param key the barcode, order number or username of the row
+    */
+   default void update(String key) {
+      update();
+   }
+
 }
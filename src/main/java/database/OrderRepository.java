@@ -2,18 +2,31 @@ package database;
 
 import model.*;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
-import java.io.FileReader;
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class OrderRepository implements DatabaseAccess, Subject {
 
 
-    private final Map<Integer, Order> orderDatabase;
+    // in order number order, for paging
+    private final NavigableMap<Integer, Order> orderDatabase;
+
+    private final SecondaryIndex<String> ordersByUsername;
+
+    private final SecondaryIndex<OrderStatus> ordersByStatus;
+
+    // orders with a due date that aren't overdue yet, by due date as epoch day
+    private final SecondaryIndex<Long> ordersByDueDay;
+
+    private final Set<Integer> overdueOrders;
+
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
 
     private final String ORDER_CSV_PATH;
 
@@ -21,10 +34,21 @@ public class OrderRepository implements DatabaseAccess, Subject {
 
     private final List<Observer> observers;
 
+    private final Journal journal;
+
+    private final SnapshotImage image;
+
     private OrderRepository(String path) {
         ORDER_CSV_PATH = path;
-        orderDatabase = new HashMap<>();
+        orderDatabase = new TreeMap<>();
+        ordersByUsername = new SecondaryIndex<>();
+        ordersByStatus = new SecondaryIndex<>();
+        ordersByDueDay = SecondaryIndex.sorted();
+        overdueOrders = new TreeSet<>();
         observers = new ArrayList<>();
+        journal = new Journal(path);
+        image = new SnapshotImage(journal, path);
+        WriteBehindFlusher.getInstance().register(this);
         loadCSV();
     }
 
@@ -41,90 +65,213 @@ public class OrderRepository implements DatabaseAccess, Subject {
 
     @Override
     public void loadCSV() {
+        if (image.load(this::readImage, this::replayRecord)) {
+            return;
+        }
+        orderDatabase.clear();
+        ordersByUsername.clear();
+        ordersByStatus.clear();
+        ordersByDueDay.clear();
+        overdueOrders.clear();
         try {
-            CSVParser parser = new CSVParser(new FileReader(ORDER_CSV_PATH), CSVFormat.RFC4180
-                    .withDelimiter(',')
-                    .withHeader(
-                            "orderNumber",
-                            "username",
-                            "orderStatus",
-                            "orderDate",
-                            "dueDate",
-                            "isOverdue"
-                    ));
-            List<CSVRecord> records = parser.getRecords();
-            for (int i = 1; i < records.size(); i++) {
+            CsvSnapshotReader reader = new CsvSnapshotReader(ORDER_CSV_PATH);
+            // skip the header row
+            reader.nextRow();
+            while (reader.nextRow()) {
                 Order order = new Order();
-                order.setOrderId(Integer.parseInt(records.get(i).get("orderNumber")));
-                order.setUsername(records.get(i).get("username"));
-                order.setOrderStatus(records.get(i).get("orderStatus"));
-                order.setOrderDate(records.get(i).get("orderDate"));
-                order.setDueDate(records.get(i).get("dueDate"));
-                order.setOverdue(Boolean.parseBoolean(records.get(i).get("isOverdue")));
-                orderDatabase.put(order.getOrderId(), order);
+                try {
+                    order.setOrderId(reader.readInt());
+                    order.setUsername(reader.readString());
+                    order.setOrderStatus(reader.readString());
+                } catch (IllegalArgumentException e) {
+                    // one bad row shouldn't keep every other order from loading
+                    System.err.println("Skipping an order row: " + e.getMessage());
+                    continue;
+                }
+                order.setOrderDate(reader.readString());
+                order.setDueDate(reader.readString());
+                order.setOverdue(reader.readBoolean());
+                putOrder(order);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.replay(this::replayRecord);
+    }
+
+    private void readImage(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setOrderId(in.readInt());
+            order.setUsername(SnapshotImage.readString(in));
+            order.setOrderStatus(SnapshotImage.readString(in));
+            order.setOrderDate(SnapshotImage.readString(in));
+            order.setDueDate(SnapshotImage.readString(in));
+            order.setOverdue(in.readBoolean());
+            putOrder(order);
+        }
     }
 
     @Override
-    public void updateCSV() {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(ORDER_CSV_PATH, false),
-                CSVFormat.RFC4180.withDelimiter(',')
-                        .withHeader("orderNumber",
-                                    "username",
-                                    "orderStatus",
-                                    "orderDate",
-                                    "dueDate",
-                                    "isOverdue"
-                                ))) {
-            for (Map.Entry<Integer, Order> entry : orderDatabase.entrySet()) {
-                Order o = entry.getValue();
-                printer.printRecord(o.getOrderId(), o.getUsername(), o.getOrderStatus(),
-                        o.getOrderDate(), o.getDueDate(), o.getOverdue());
+    public synchronized void saveImage() {
+        image.save(out -> {
+            out.writeInt(orderDatabase.size());
+            for (Order o : orderDatabase.values()) {
+                out.writeInt(o.getOrderId());
+                SnapshotImage.writeString(out, o.getUsername());
+                SnapshotImage.writeString(out, o.getOrderStatus() == null ? null : o.getOrderStatus().name());
+                SnapshotImage.writeString(out, o.getOrderDate());
+                SnapshotImage.writeString(out, o.getDueDate());
+                out.writeBoolean(o.getOverdue());
             }
-            notifyObservers();
-        } catch (IOException e) {
-            e.printStackTrace();
+        });
+    }
+
+    /**
+     * Apply a journal record on top of the loaded snapshot
+     * @param record the journal record
+     */
+    private void replayRecord(CSVRecord record) {
+        int orderNumber = Integer.parseInt(record.get(1));
+        if (record.get(0).equals(Journal.PUT)) {
+            Order order = new Order();
+            order.setOrderId(orderNumber);
+            order.setUsername(record.get(2));
+            order.setOrderStatus(record.get(3));
+            order.setOrderDate(record.get(4));
+            order.setDueDate(record.get(5));
+            order.setOverdue(Boolean.parseBoolean(record.get(6)));
+            putOrder(order);
+        } else if (record.get(0).equals(Journal.DELETE)) {
+            removeOrder(orderNumber);
+        }
+    }
+
+    /**
+     * Write the pending journal records, the snapshot is only rewritten once the journal grows too large
+     */
+    @Override
+    public synchronized void updateCSV() {
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(CSVFormat.RFC4180.withDelimiter(',')
+                    .withHeader("orderNumber",
+                                "username",
+                                "orderStatus",
+                                "orderDate",
+                                "dueDate",
+                                "isOverdue"
+                            ), printer -> {
+                for (Map.Entry<Integer, Order> entry : orderDatabase.entrySet()) {
+                    Order o = entry.getValue();
+                    printer.printRecord(o.getOrderId(), o.getUsername(), o.getOrderStatus(),
+                            o.getOrderDate(), o.getDueDate(), o.getOverdue());
+                }
+            });
+            saveImage();
+        } else {
+            journal.flush();
         }
     }
 
     @Override
-    public void clearCSV() {
+    public synchronized void clearCSV() {
         try {
             FileWriter fw = new FileWriter(ORDER_CSV_PATH, false);
             fw.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.truncate();
+        image.delete();
+    }
+
+    private void logPut(Order o) {
+        journal.log(Journal.PUT, o.getOrderId(), o.getUsername(), o.getOrderStatus(),
+                o.getOrderDate(), o.getDueDate(), o.getOverdue());
+        markDirty();
+        notifyObservers(String.valueOf(o.getOrderId()));
     }
 
-    public void cancelOrder(int orderNumber) {
+    private void logDelete(int orderNumber) {
+        journal.log(Journal.DELETE, orderNumber);
+        markDirty();
+        notifyObservers();
+    }
+
+    private void putOrder(Order o) {
+        orderDatabase.put(o.getOrderId(), o);
+        reindex(o.getOrderId(), o);
+    }
+
+    private void removeOrder(int orderNumber) {
         orderDatabase.remove(orderNumber);
-        updateCSV();
+        ordersByUsername.remove(orderNumber);
+        ordersByStatus.remove(orderNumber);
+        ordersByDueDay.remove(orderNumber);
+        overdueOrders.remove(orderNumber);
     }
 
-    public void changeOrderStatus(int orderNumber, String status) {
+    private void reindex(int orderNumber, Order o) {
+        ordersByUsername.put(orderNumber, o.getUsername());
+        ordersByStatus.put(orderNumber, o.getOrderStatus());
+        Long dueDay = o.getOverdue() ? null : parseDueDay(o.getDueDate());
+        if (dueDay == null) {
+            ordersByDueDay.remove(orderNumber);
+        } else {
+            ordersByDueDay.put(orderNumber, dueDay);
+        }
+        if (o.getOverdue()) {
+            overdueOrders.add(orderNumber);
+        } else {
+            overdueOrders.remove(orderNumber);
+        }
+    }
+
+    /**
+     * @param dueDate the due date as yyyy/MM/dd
+     * @return the due date as epoch day, or null if there is none
+     */
+    private static Long parseDueDay(String dueDate) {
+        if (dueDate == null || dueDate.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(dueDate, DUE_DATE_FORMAT).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public synchronized void cancelOrder(int orderNumber) {
+        removeOrder(orderNumber);
+        logDelete(orderNumber);
+    }
+
+    public synchronized void changeOrderStatus(int orderNumber, OrderStatus status) {
         if (orderDatabase.containsKey(orderNumber)) {
             Order o = orderDatabase.get(orderNumber);
             o.setOrderStatus(status);
-            orderDatabase.replace(orderNumber, o);
-            updateCSV();
+            ordersByStatus.put(orderNumber, status);
+            logPut(o);
         }
     }
 
-    public void createOrder(Order o) {
-        orderDatabase.put(o.getOrderId(), o);
-        updateCSV();
+    public void changeOrderStatus(int orderNumber, String status) {
+        changeOrderStatus(orderNumber, OrderStatus.parse(status));
     }
 
-    public void deleteOrder(int orderNumber) {
-        orderDatabase.remove(orderNumber);
-        updateCSV();
+    public synchronized void createOrder(Order o) {
+        putOrder(o);
+        logPut(o);
     }
 
-    public List<Order> getAllOrders() {
+    public synchronized void deleteOrder(int orderNumber) {
+        removeOrder(orderNumber);
+        logDelete(orderNumber);
+    }
+
+    public synchronized List<Order> getAllOrders() {
         List<Order> allOrders = new ArrayList<>();
         for (Map.Entry<Integer, Order> entry : orderDatabase.entrySet()) {
             allOrders.add(entry.getValue());
@@ -132,38 +279,122 @@ public class OrderRepository implements DatabaseAccess, Subject {
         return allOrders;
     }
 
-    public List<Order> getOrdersByCustomer(String username) {
+    /**
+     * @param cursor the order number the previous page ended at, or null for the first page
+     * @param limit the page size
+     * @return a page of every order, by order number
+     */
+    public synchronized Page<Order> getOrders(String cursor, int limit) {
+        Map<Integer, Order> after = cursor == null ? orderDatabase
+                : orderDatabase.tailMap(Integer.parseInt(cursor), false);
+        return page(after.keySet().iterator(), limit, orderDatabase.size());
+    }
+
+    /**
+     * @param username the customer
+     * @param cursor the order number the previous page ended at, or null for the first page
+     * @param limit the page size
+     * @return a page of the customer's orders, by order number
+     */
+    public synchronized Page<Order> getOrdersByCustomer(String username, String cursor, int limit) {
+        Iterator<Integer> ids = ordersByUsername.idsAfter(username, cursor == null ? null : Integer.parseInt(cursor));
+        return page(ids, limit, ordersByUsername.count(username));
+    }
+
+    private Page<Order> page(Iterator<Integer> orderNumbers, int limit, int total) {
+        Page.checkLimit(limit);
         List<Order> orders = new ArrayList<>();
-        for (Map.Entry<Integer, Order> entry : orderDatabase.entrySet()) {
-            Order o = entry.getValue();
-            if (o.getUsername().equals(username)) {
-                orders.add(entry.getValue());
-            }
+        Integer last = null;
+        while (orderNumbers.hasNext() && orders.size() < limit) {
+            last = orderNumbers.next();
+            orders.add(orderDatabase.get(last));
+        }
+        return new Page<>(orders, orderNumbers.hasNext() ? String.valueOf(last) : null, total);
+    }
+
+    public synchronized List<Order> getOrdersByCustomer(String username) {
+        List<Order> orders = new ArrayList<>();
+        for (int orderNumber : ordersByUsername.get(username)) {
+            orders.add(orderDatabase.get(orderNumber));
+        }
+        return orders;
+    }
+
+    /**
+     * @param status the status
+     * @return the orders currently in that status
+     */
+    public synchronized List<Order> getOrdersWithStatus(OrderStatus status) {
+        List<Order> orders = new ArrayList<>();
+        for (int orderNumber : ordersByStatus.get(status)) {
+            orders.add(orderDatabase.get(orderNumber));
         }
         return orders;
     }
 
+    /**
+     * Flag the orders that are due on or before a day as overdue
+     * @param today the day as epoch day
+     * @return the orders that just became overdue
+     */
+    public synchronized List<Order> markOverdue(long today) {
+        List<Order> orders = new ArrayList<>();
+        for (int orderNumber : ordersByDueDay.idsUpTo(today)) {
+            Order o = orderDatabase.get(orderNumber);
+            o.setOverdue(true);
+            reindex(orderNumber, o);
+            logPut(o);
+            orders.add(o);
+        }
+        return orders;
+    }
+
+    public synchronized List<Order> getOverdueOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (int orderNumber : overdueOrders) {
+            orders.add(orderDatabase.get(orderNumber));
+        }
+        return orders;
+    }
+
+    /**
+     * Move every order of a customer to their new username
+     * @param newUsername the new username
+     * @param oldUsername the old username
+     */
+    public synchronized void changeUsername(String newUsername, String oldUsername) {
+        for (int orderNumber : new ArrayList<>(ordersByUsername.get(oldUsername))) {
+            Order o = orderDatabase.get(orderNumber);
+            o.setUsername(newUsername);
+            ordersByUsername.put(orderNumber, newUsername);
+            logPut(o);
+        }
+    }
+
     public Order getOrder(int orderNumber) {
         return orderDatabase.getOrDefault(orderNumber, null);
     }
 
-    public int getTotalOrders() {
+    public synchronized int getTotalOrders() {
         return orderDatabase.size();
     }
 
-    public boolean updateOrder(int orderNumber, Order o) {
+    public synchronized boolean updateOrder(int orderNumber, Order o) {
         if (validateOrder(o) && orderDatabase.containsKey(orderNumber)) {
             orderDatabase.replace(orderNumber, o);
-            updateCSV();
+            reindex(orderNumber, o);
+            logPut(o);
             return true;
         } else {
             return false;
         }
     }
 
-    public void returnOrder(Order order) {
-        orderDatabase.replace(order.getOrderId(), order);
-        updateCSV();
+    public synchronized void returnOrder(Order order) {
+        if (orderDatabase.replace(order.getOrderId(), order) != null) {
+            reindex(order.getOrderId(), order);
+            logPut(order);
+        }
     }
 
     @Override
@@ -183,6 +414,15 @@ public class OrderRepository implements DatabaseAccess, Subject {
         }
     }
 
+    /**
+     * Tell observers only this order changed
+     */
+    private void notifyObservers(String orderNumber) {
+        for (Observer o : observers) {
+            o.update(orderNumber);
+        }
+    }
+
     private boolean validateOrder(Order o) {
         if (o == null) {
             return false;
@@ -192,7 +432,7 @@ public class OrderRepository implements DatabaseAccess, Subject {
         || o.getMovies() == null) {
                 return false;
             } else {
-                return !o.getOrderStatus().equals("") && !o.getOrderDate().equals("")
+                return !o.getOrderDate().equals("")
                         && !o.getUsername().equals("") && !o.getDueDate().equals("");
             }
         }
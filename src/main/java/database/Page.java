@@ -0,0 +1,61 @@
+package database;
+
+import java.util.List;
+
+/**
+ * One page of a listing in a stable order.
+ * The cursor of the next page is the sort key of the last row on this one, so rows added or removed
+ * meanwhile don't shift the pages that follow.
+ * @param <T> the row type
+ */
+public class Page<T> {
+
+    // total of a listing that would have to be read in full to be counted
+    public static final int UNKNOWN_TOTAL = -1;
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    private final int total;
+
+    public Page(List<T> items, String nextCursor, int total) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+
+    /**
+     * @param limit the page size asked for
+     * @return the limit
+     * @throws IllegalArgumentException if the limit is less than one, a page needs a last row to carry on from
+     */
+    static int checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("page size must be at least 1, was " + limit);
+        }
+        return limit;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor to pass for the next page, or null if this is the last one
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * @return how many rows the whole listing has, or UNKNOWN_TOTAL
+     */
+    public int getTotal() {
+        return total;
+    }
+}
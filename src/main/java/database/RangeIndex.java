@@ -0,0 +1,124 @@
+package database;
+
+import model.Movie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Movies sorted by a key such as price or release date, ties broken by barcode, for range queries.
+ * A page is read from a sub-range of the sorted set starting after the last movie of the previous page, so
+ * it costs a tree descent plus the rows returned no matter how deep into the range it is.
+ * @param <K> the key type
+ */
+public class RangeIndex<K extends Comparable<K>> implements MovieIndex {
+
+    private static final class Entry<K> {
+
+        private final K key;
+        private final String barcode;
+
+        private Entry(K key, String barcode) {
+            this.key = key;
+            this.barcode = barcode;
+        }
+    }
+
+    private final Function<Movie, K> keyOf;
+
+    private final Comparator<Entry<K>> order;
+
+    private final NavigableSet<Entry<K>> sorted;
+
+    private final Map<String, K> keyByBarcode;
+
+    /**
+     * @param keyOf the key of a movie, or null to leave the movie out
+     */
+    public RangeIndex(Function<Movie, K> keyOf) {
+        this.keyOf = keyOf;
+        // a null barcode sorts before every barcode with the same key, for the bounds of a range
+        order = Comparator.<Entry<K>, K>comparing(e -> e.key)
+                .thenComparing(e -> e.barcode, Comparator.nullsFirst(Comparator.naturalOrder()));
+        sorted = new TreeSet<>(order);
+        keyByBarcode = new HashMap<>();
+    }
+
+    @Override
+    public void add(Movie movie) {
+        K key = keyOf.apply(movie);
+        if (key != null) {
+            sorted.add(new Entry<>(key, movie.getBarcode()));
+            keyByBarcode.put(movie.getBarcode(), key);
+        }
+    }
+
+    @Override
+    public void remove(Movie movie) {
+        K key = keyByBarcode.remove(movie.getBarcode());
+        if (key != null) {
+            sorted.remove(new Entry<>(key, movie.getBarcode()));
+        }
+    }
+
+    @Override
+    public void clear() {
+        sorted.clear();
+        keyByBarcode.clear();
+    }
+
+    /**
+     * @param from the lowest key, or null for no lower bound
+     * @param to the highest key, or null for no upper bound
+     * @param after the last movie of the previous page as it was returned, or null for the first page. The
+     *              page carries on after it even if the movie has since been changed or deleted.
+     * @param limit the most barcodes to return
+     * @return barcodes of the movies with keys in the range, lowest key first
+     */
+    public List<String> range(K from, K to, Movie after, int limit) {
+        return range(from, to, after == null ? null : keyOf.apply(after), after == null ? null : after.getBarcode(),
+                limit);
+    }
+
+    /**
+     * @param from the lowest key, or null for no lower bound
+     * @param to the highest key, or null for no upper bound
+     * @param afterKey the key of the last movie of the previous page, or null for the first page
+     * @param afterBarcode the barcode of the last movie of the previous page
+     * @param limit the most barcodes to return
+     * @return barcodes of the movies with keys in the range, lowest key first
+     */
+    public List<String> range(K from, K to, K afterKey, String afterBarcode, int limit) {
+        Entry<K> start = from == null ? null : new Entry<>(from, null);
+        boolean inclusive = true;
+        if (afterKey != null) {
+            Entry<K> last = new Entry<>(afterKey, afterBarcode);
+            if (start == null || order.compare(last, start) >= 0) {
+                start = last;
+                inclusive = false;
+            }
+        }
+        NavigableSet<Entry<K>> range = start == null ? sorted : sorted.tailSet(start, inclusive);
+        List<String> page = new ArrayList<>();
+        for (Entry<K> entry : range) {
+            if (page.size() >= limit || (to != null && entry.key.compareTo(to) > 0)) {
+                break;
+            }
+            page.add(entry.barcode);
+        }
+        return page;
+    }
+
+    /**
+     * @return the key a movie is indexed under, or null if it isn't indexed
+     */
+    public K key(String barcode) {
+        return keyByBarcode.get(barcode);
+    }
+}
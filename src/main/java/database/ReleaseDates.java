@@ -0,0 +1,67 @@
+package database;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Year;
+
+/**
+ * Parsing of the MM/dd/yy release dates in the catalog, some of which are malformed
+ */
+public final class ReleaseDates {
+
+    private ReleaseDates() {
+    }
+
+    /**
+     * @param releaseDate the release date as MM/dd/yy
+     * @return the four digit year, or null if the date has no two digit year
+     */
+    public static Integer year(String releaseDate) {
+        if (releaseDate == null) {
+            return null;
+        }
+        String yy = releaseDate.substring(releaseDate.lastIndexOf('/') + 1);
+        if (!isNumber(yy, 2)) {
+            return null;
+        }
+        int year = Integer.parseInt(yy);
+        // two digit years up to the current one are this century
+        int century = year <= Year.now().getValue() % 100 ? 2000 : 1900;
+        return century + year;
+    }
+
+    /**
+     * @param releaseDate the release date as MM/dd/yy
+     * @return days since 1970-01-01, or null if the date isn't a real MM/dd/yy date
+     */
+    public static Integer epochDay(String releaseDate) {
+        if (releaseDate == null) {
+            return null;
+        }
+        String[] parts = releaseDate.split("/");
+        if (parts.length != 3 || !isNumber(parts[0], 2) || !isNumber(parts[1], 2)) {
+            return null;
+        }
+        Integer year = year(releaseDate);
+        if (year == null) {
+            return null;
+        }
+        try {
+            return (int) LocalDate.of(year, Integer.parseInt(parts[0]), Integer.parseInt(parts[1])).toEpochDay();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumber(String s, int digits) {
+        if (s.length() != digits) {
+            return false;
+        }
+        for (int i = 0; i < digits; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -4,28 +4,41 @@ import model.Movie;
 import model.Order;
 import model.RentedMovie;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
-import java.io.FileReader;
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * The movies out on rent, one row per order and barcode with the number of copies, grouped by order id
+ */
 public class RentedRepository implements DatabaseAccess {
 
-    private final List<RentedMovie> rentedMovies;
+    private final Map<Integer, List<RentedMovie>> rentedByOrder;
 
     private volatile static RentedRepository rentedRepositoryInstance;
 
     private final String RENTED_CSV_PATH;
 
+    private static final String ADD = "ADD";
+
+    private final Journal journal;
+
+    private final SnapshotImage image;
+
     private RentedRepository(String path) {
         RENTED_CSV_PATH = path;
-        rentedMovies = new ArrayList<>();
+        rentedByOrder = new LinkedHashMap<>();
+        journal = new Journal(path);
+        image = new SnapshotImage(journal, path);
+        WriteBehindFlusher.getInstance().register(this);
         loadCSV();
     }
 
@@ -40,39 +53,90 @@ public class RentedRepository implements DatabaseAccess {
         return rentedRepositoryInstance;
     }
 
+    /**
+     * Write the pending journal records, the snapshot is only rewritten once the journal grows too large
+     */
     @Override
     public synchronized void updateCSV() {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(RENTED_CSV_PATH, false),
-                CSVFormat.RFC4180.withDelimiter(',')
-                        .withHeader("orderNumber",
-                                "barcode"
-                        ))) {
-            for (RentedMovie r : rentedMovies) {
-                printer.printRecord(r.getOrderId(), r.getBarcode());
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(CSVFormat.RFC4180.withDelimiter(',')
+                    .withHeader("orderNumber",
+                            "barcode",
+                            "quantity"
+                    ), printer -> {
+                for (List<RentedMovie> order : rentedByOrder.values()) {
+                    for (RentedMovie r : order) {
+                        printer.printRecord(r.getOrderId(), r.getBarcode(), r.getQuantity());
+                    }
+                }
+            });
+            saveImage();
+        } else {
+            journal.flush();
         }
     }
 
     @Override
     public synchronized void loadCSV() {
+        if (image.load(this::readImage, this::replayRecord)) {
+            return;
+        }
+        rentedByOrder.clear();
         try {
-            CSVParser parser = new CSVParser(new FileReader(RENTED_CSV_PATH), CSVFormat.RFC4180
-                    .withDelimiter(',')
-                    .withHeader(
-                            "orderNumber",
-                            "barcode"
-                    ));
-            List<CSVRecord> records = parser.getRecords();
-            for (int i = 1; i < records.size(); i++) {
-                int orderNo = Integer.parseInt(records.get(i).get("orderNumber"));
-                String barcode = records.get(i).get("barcode");
-                rentedMovies.add(new RentedMovie(orderNo, barcode));
+            CsvSnapshotReader reader = new CsvSnapshotReader(RENTED_CSV_PATH);
+            // skip the header row
+            reader.nextRow();
+            while (reader.nextRow()) {
+                int orderNo = reader.readInt();
+                String barcode = reader.readString();
+                // older snapshots have one row per copy and no quantity column
+                int quantity = reader.hasField() ? reader.readInt() : 1;
+                add(orderNo, barcode, quantity);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.replay(this::replayRecord);
+    }
+
+    private void readImage(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int orderNo = in.readInt();
+            String barcode = SnapshotImage.readString(in);
+            add(orderNo, barcode, in.readInt());
+        }
+    }
+
+    @Override
+    public synchronized void saveImage() {
+        image.save(out -> {
+            int count = 0;
+            for (List<RentedMovie> order : rentedByOrder.values()) {
+                count += order.size();
+            }
+            out.writeInt(count);
+            for (List<RentedMovie> order : rentedByOrder.values()) {
+                for (RentedMovie r : order) {
+                    out.writeInt(r.getOrderId());
+                    SnapshotImage.writeString(out, r.getBarcode());
+                    out.writeInt(r.getQuantity());
+                }
+            }
+        });
+    }
+
+    /**
+     * Apply a journal record on top of the loaded snapshot
+     * @param record the journal record
+     */
+    private void replayRecord(CSVRecord record) {
+        int orderNumber = Integer.parseInt(record.get(1));
+        if (record.get(0).equals(ADD)) {
+            add(orderNumber, record.get(2), Integer.parseInt(record.get(3)));
+        } else if (record.get(0).equals(Journal.DELETE)) {
+            rentedByOrder.remove(orderNumber);
+        }
     }
 
     @Override
@@ -83,32 +147,80 @@ public class RentedRepository implements DatabaseAccess {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.truncate();
+        image.delete();
+    }
+
+    /**
+     * Add copies of a movie to an order, merging them into the order's row for that barcode
+     */
+    private void add(int orderNumber, String barcode, int quantity) {
+        List<RentedMovie> order = rentedByOrder.computeIfAbsent(orderNumber, k -> new ArrayList<>());
+        for (int i = 0; i < order.size(); i++) {
+            RentedMovie r = order.get(i);
+            if (r.getBarcode().equals(barcode)) {
+                order.set(i, new RentedMovie(orderNumber, barcode, r.getQuantity() + quantity));
+                return;
+            }
+        }
+        order.add(new RentedMovie(orderNumber, barcode, quantity));
     }
 
-    public void storeMovies(Order order) {
+    public synchronized void storeMovies(Order order) {
         for (Map.Entry<Movie,Integer> entry : order.getMovies().entrySet()) {
-            for (int i = 0; i < entry.getValue(); i++) {
-                rentedMovies.add(new RentedMovie(order.getOrderId(), entry.getKey().getBarcode()));
+            add(order.getOrderId(), entry.getKey().getBarcode(), entry.getValue());
+            journal.log(ADD, order.getOrderId(), entry.getKey().getBarcode(), entry.getValue());
+        }
+        markDirty();
+    }
+
+    /**
+     * @return one entry per rented copy
+     */
+    public synchronized List<RentedMovie> getAllRentedMovies() {
+        List<RentedMovie> copies = new ArrayList<>();
+        for (List<RentedMovie> order : rentedByOrder.values()) {
+            for (RentedMovie r : order) {
+                for (int i = 0; i < r.getQuantity(); i++) {
+                    copies.add(new RentedMovie(r.getOrderId(), r.getBarcode()));
+                }
             }
         }
-        updateCSV();
+        return copies;
+    }
+
+    /**
+     * @param orderNumber the order
+     * @return one row per barcode in the order with the number of copies
+     */
+    public synchronized List<RentedMovie> getRentedMoviesInOrder(int orderNumber) {
+        List<RentedMovie> order = rentedByOrder.get(orderNumber);
+        return order == null ? new ArrayList<>() : new ArrayList<>(order);
     }
 
-    public List<RentedMovie> getAllRentedMovies() {
-        return rentedMovies;
+    /**
+     * @return how many copies of each movie are out on rent, by barcode
+     */
+    public synchronized Map<String, Integer> countRentedCopies() {
+        Map<String, Integer> copies = new HashMap<>();
+        for (List<RentedMovie> order : rentedByOrder.values()) {
+            for (RentedMovie r : order) {
+                copies.merge(r.getBarcode(), r.getQuantity(), Integer::sum);
+            }
+        }
+        return copies;
     }
 
-    public void deleteRentedMoviesFromOrder(int orderNumber) {
-        rentedMovies.removeIf(r -> r.getOrderId() == orderNumber);
-        updateCSV();
+    public synchronized void deleteRentedMoviesFromOrder(int orderNumber) {
+        rentedByOrder.remove(orderNumber);
+        journal.log(Journal.DELETE, orderNumber);
+        markDirty();
     }
 
-    public int countMoviesInOrder(int orderNumber) {
+    public synchronized int countMoviesInOrder(int orderNumber) {
         int count = 0;
-        for (RentedMovie r : rentedMovies) {
-            if (r.getOrderId() == orderNumber) {
-                count++;
-            }
+        for (RentedMovie r : rentedByOrder.getOrDefault(orderNumber, Collections.emptyList())) {
+            count += r.getQuantity();
         }
         return count;
     }
@@ -0,0 +1,129 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Maps a secondary key to the ids of the rows that have it, ids in ascending order.
+ * The index remembers the key each id was filed under, so a row that was changed in place can still be
+ * moved out of its old bucket. Not thread safe, the repository's lock covers it.
+ * @param <K> the key type
+ */
+public class SecondaryIndex<K> {
+
+    private final Map<K, Set<Integer>> idsByKey;
+
+    private final Map<Integer, K> keyById;
+
+    public SecondaryIndex() {
+        this(new HashMap<>());
+    }
+
+    private SecondaryIndex(Map<K, Set<Integer>> idsByKey) {
+        this.idsByKey = idsByKey;
+        keyById = new HashMap<>();
+    }
+
+    /**
+     * @return an index that keeps its keys in order, for range lookups with idsUpTo
+     */
+    public static <K extends Comparable<K>> SecondaryIndex<K> sorted() {
+        return new SecondaryIndex<>(new TreeMap<>());
+    }
+
+    /**
+     * File an id under a key, moving it out of the bucket it was in before
+     * @param id the row id
+     * @param key the key
+     */
+    public void put(int id, K key) {
+        if (keyById.containsKey(id)) {
+            K old = keyById.get(id);
+            if (Objects.equals(old, key)) {
+                return;
+            }
+            removeFromBucket(id, old);
+        }
+        keyById.put(id, key);
+        idsByKey.computeIfAbsent(key, k -> new TreeSet<>()).add(id);
+    }
+
+    public void remove(int id) {
+        if (keyById.containsKey(id)) {
+            removeFromBucket(id, keyById.remove(id));
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return a read-only view of the ids filed under the key
+     */
+    public Set<Integer> get(K key) {
+        Set<Integer> ids = idsByKey.get(key);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Only for an index created with sorted()
+     * @param key the highest key
+     * @return the ids filed under keys up to and including the given one, lowest key first
+     */
+    public List<Integer> idsUpTo(K key) {
+        if (!(idsByKey instanceof NavigableMap)) {
+            throw new UnsupportedOperationException("index is not sorted");
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (Set<Integer> bucket : ((NavigableMap<K, Set<Integer>>) idsByKey).headMap(key, true).values()) {
+            ids.addAll(bucket);
+        }
+        return ids;
+    }
+
+    /**
+     * @param key the key
+     * @param after the id the previous page ended at, or null for the first page
+     * @return an iterator over the ids filed under the key, in order, starting after the given id
+     */
+    public Iterator<Integer> idsAfter(K key, Integer after) {
+        NavigableSet<Integer> ids = (NavigableSet<Integer>) idsByKey.get(key);
+        if (ids == null) {
+            return Collections.emptyIterator();
+        }
+        return Collections.unmodifiableSet(after == null ? ids : ids.tailSet(after, false)).iterator();
+    }
+
+    /**
+     * @return how many ids are filed under the key
+     */
+    public int count(K key) {
+        Set<Integer> ids = idsByKey.get(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    public K keyOf(int id) {
+        return keyById.get(id);
+    }
+
+    public void clear() {
+        idsByKey.clear();
+        keyById.clear();
+    }
+
+    private void removeFromBucket(int id, K key) {
+        Set<Integer> ids = idsByKey.get(key);
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            idsByKey.remove(key);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package database;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * Binary image of a repository's in-memory state, saved next to its csv.
+ * Loading the image skips parsing the csv entirely, only the journal records written after the image
+ * was saved are replayed on top of it. The image records the size and modification time of every csv it
+ * was built from, if any of them changed since, or the format version differs, the repository loads
+ * from csv as usual.
+ */
+public class SnapshotImage {
+
+    private static final int MAGIC = 0x5643494D;
+
+    // bump whenever the layout of any repository's image changes, so old images are ignored
+    private static final int VERSION = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static volatile boolean enabled = false;
+
+    private final String IMAGE_PATH;
+
+    private final String[] SOURCE_PATHS;
+
+    private final Journal journal;
+
+    /**
+     * Writes the state of a repository to the image
+     */
+    public interface ImageWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the state of a repository back from the image, in the order it was written
+     */
+    public interface ImageReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * @param journal the journal of the repository
+     * @param sourcePaths every csv the repository loads, the image is saved next to the first one
+     */
+    public SnapshotImage(Journal journal, String... sourcePaths) {
+        IMAGE_PATH = sourcePaths[0] + ".img";
+        SOURCE_PATHS = sourcePaths;
+        this.journal = journal;
+    }
+
+    /**
+     * @param enable true to load and save images, they are off by default
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Restore the repository from the image and replay the journal records written after it
+     * @param reader reads the repository state
+     * @param replay applies a journal record to the repository
+     * @return false if the image is missing, stale or unreadable, the repository should then load its csv
+     */
+    public synchronized boolean load(ImageReader reader, Consumer<CSVRecord> replay) {
+        if (!enabled || !new File(IMAGE_PATH).exists()) {
+            return false;
+        }
+        long journalLength;
+        int journalRecords;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(IMAGE_PATH), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            for (String path : SOURCE_PATHS) {
+                File source = new File(path);
+                if (in.readLong() != source.length() || in.readLong() != source.lastModified()) {
+                    return false;
+                }
+            }
+            journalLength = in.readLong();
+            journalRecords = in.readInt();
+            // the journal only ever grows until a checkpoint, which also rewrites the csv
+            if (journal.length() < journalLength) {
+                return false;
+            }
+            reader.read(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        journal.replay(replay, journalLength, journalRecords);
+        return true;
+    }
+
+    /**
+     * Save the repository state, the journal is flushed first so the image and journal agree on where it ends
+     * @param writer writes the repository state
+     */
+    public synchronized void save(ImageWriter writer) {
+        if (!enabled) {
+            return;
+        }
+        journal.flush();
+        File tmp = new File(IMAGE_PATH + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp, false);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (String path : SOURCE_PATHS) {
+                    File source = new File(path);
+                    out.writeLong(source.length());
+                    out.writeLong(source.lastModified());
+                }
+                out.writeLong(journal.length());
+                out.writeInt(journal.size());
+                writer.write(out);
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), Paths.get(IMAGE_PATH), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Remove the image, called when the csv is cleared
+     */
+    public synchronized void delete() {
+        new File(IMAGE_PATH).delete();
+    }
+
+    /**
+     * Write a string that may be null
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Read a string written by writeString
+     */
+    public static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,134 @@
+package database;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stock of every movie as primitive atomic counters indexed by barcode ordinal.
+ * Counters live in fixed size segments that never move, so reads and compare-and-set updates need no lock
+ * even while new barcodes are being registered. Ordinals are never reused, a checkout that looked up a
+ * barcode just before it was deleted can only ever touch that movie's old counter.
+ */
+public class StockCounters {
+
+    private static final int SEGMENT_BITS = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private final ConcurrentHashMap<String, Integer> ordinals;
+
+    private volatile AtomicIntegerArray[] segments;
+
+    private int next;
+
+    public StockCounters() {
+        ordinals = new ConcurrentHashMap<>();
+        segments = new AtomicIntegerArray[]{new AtomicIntegerArray(SEGMENT_SIZE)};
+        next = 0;
+    }
+
+    /**
+     * Set the stock of a barcode, giving it a counter if it doesn't have one yet
+     * @param barcode the barcode of the movie
+     * @param stock the stock
+     */
+    public synchronized void register(String barcode, int stock) {
+        Integer ordinal = ordinals.get(barcode);
+        if (ordinal == null) {
+            ordinal = next++;
+            if (ordinal >> SEGMENT_BITS == segments.length) {
+                AtomicIntegerArray[] grown = Arrays.copyOf(segments, segments.length * 2);
+                for (int i = segments.length; i < grown.length; i++) {
+                    grown[i] = new AtomicIntegerArray(SEGMENT_SIZE);
+                }
+                segments = grown;
+            }
+            counters(ordinal).set(ordinal & (SEGMENT_SIZE - 1), stock);
+            ordinals.put(barcode, ordinal);
+        } else {
+            counters(ordinal).set(ordinal & (SEGMENT_SIZE - 1), stock);
+        }
+    }
+
+    /**
+     * Forget a barcode, its counter is not reused
+     * @param barcode the barcode of the movie
+     */
+    public void remove(String barcode) {
+        ordinals.remove(barcode);
+    }
+
+    public boolean contains(String barcode) {
+        return ordinals.containsKey(barcode);
+    }
+
+    /**
+     * @param barcode the barcode of the movie
+     * @return the stock, 0 if the barcode has no counter
+     */
+    public int get(String barcode) {
+        Integer ordinal = ordinals.get(barcode);
+        return ordinal == null ? 0 : counters(ordinal).get(ordinal & (SEGMENT_SIZE - 1));
+    }
+
+    /**
+     * Overwrite the stock of a barcode that already has a counter
+     * @param barcode the barcode of the movie
+     * @param stock the stock
+     */
+    public void set(String barcode, int stock) {
+        Integer ordinal = ordinals.get(barcode);
+        if (ordinal != null) {
+            counters(ordinal).set(ordinal & (SEGMENT_SIZE - 1), stock);
+        }
+    }
+
+    /**
+     * Take copies out of stock, the stock never goes below zero
+     * @param barcode the barcode of the movie
+     * @param quantity the number of copies
+     * @return false if the barcode has no counter or not enough stock, nothing is taken then
+     */
+    public boolean take(String barcode, int quantity) {
+        Integer ordinal = ordinals.get(barcode);
+        if (ordinal == null) {
+            return false;
+        }
+        AtomicIntegerArray counters = counters(ordinal);
+        int i = ordinal & (SEGMENT_SIZE - 1);
+        while (true) {
+            int stock = counters.get(i);
+            if (stock < quantity) {
+                return false;
+            }
+            if (counters.compareAndSet(i, stock, stock - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Put copies back into stock
+     * @param barcode the barcode of the movie
+     * @param quantity the number of copies
+     * @return false if the barcode has no counter
+     */
+    public boolean give(String barcode, int quantity) {
+        Integer ordinal = ordinals.get(barcode);
+        if (ordinal == null) {
+            return false;
+        }
+        counters(ordinal).addAndGet(ordinal & (SEGMENT_SIZE - 1), quantity);
+        return true;
+    }
+
+    public synchronized void clear() {
+        ordinals.clear();
+        segments = new AtomicIntegerArray[]{new AtomicIntegerArray(SEGMENT_SIZE)};
+        next = 0;
+    }
+
+    private AtomicIntegerArray counters(int ordinal) {
+        return segments[ordinal >> SEGMENT_BITS];
+    }
+}
@@ -0,0 +1,181 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Side file holding the latest stock of every movie in fixed width slots, one per barcode.
+ * A stock change is a positional write of the 4 byte count into the barcode's slot, so renting and returning
+ * never touch the csv or the journal. The file always has the newest stock, it is applied after the snapshot
+ * and journal are loaded, and is cleared once a checkpoint has written the same counts to the csv.
+ */
+public class StockFile {
+
+    // slot layout: state byte, barcode length byte, barcode bytes, then the stock
+    private static final int STATE = 0;
+    private static final int LENGTH = 1;
+    private static final int BARCODE = 2;
+    private static final int MAX_BARCODE = 42;
+    private static final int STOCK = 44;
+    static final int SLOT_SIZE = 48;
+
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+
+    private final String STOCK_PATH;
+
+    private final Map<String, Integer> ordinals;
+
+    private final Deque<Integer> freeSlots;
+
+    private int slots;
+
+    private FileChannel channel;
+
+    public StockFile(String csvPath) {
+        STOCK_PATH = csvPath + ".stock";
+        ordinals = new HashMap<>();
+        freeSlots = new ArrayDeque<>();
+        slots = 0;
+        try {
+            channel = FileChannel.open(Paths.get(STOCK_PATH), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Read every slot and pass the stock of each barcode to the consumer
+     * @param consumer applies the stock to the catalog
+     */
+    public synchronized void load(ObjIntConsumer<String> consumer) {
+        ordinals.clear();
+        freeSlots.clear();
+        slots = 0;
+        if (channel == null) {
+            return;
+        }
+        try {
+            // a torn slot at the end is ignored, the stock it held is still in the journal or csv
+            slots = (int) (channel.size() / SLOT_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(slots * SLOT_SIZE);
+            channel.read(buffer, 0);
+            for (int slot = 0; slot < slots; slot++) {
+                int base = slot * SLOT_SIZE;
+                if (buffer.get(base + STATE) != LIVE) {
+                    freeSlots.add(slot);
+                    continue;
+                }
+                byte[] barcode = new byte[buffer.get(base + LENGTH) & 0xFF];
+                for (int i = 0; i < barcode.length; i++) {
+                    barcode[i] = buffer.get(base + BARCODE + i);
+                }
+                String key = new String(barcode, StandardCharsets.UTF_8);
+                ordinals.put(key, slot);
+                consumer.accept(key, buffer.getInt(base + STOCK));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Write the stock of a movie into its slot, taking a new slot the first time the barcode is written
+     * @param barcode the barcode of the movie
+     * @param stock the new stock
+     * @return false if the stock could not be written and has to be recorded some other way
+     */
+    public synchronized boolean write(String barcode, int stock) {
+        if (channel == null) {
+            return false;
+        }
+        try {
+            Integer slot = ordinals.get(barcode);
+            if (slot != null) {
+                ByteBuffer count = ByteBuffer.allocate(4);
+                count.putInt(0, stock);
+                channel.write(count, (long) slot * SLOT_SIZE + STOCK);
+                return true;
+            }
+            byte[] bytes = barcode.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_BARCODE) {
+                return false;
+            }
+            slot = freeSlots.isEmpty() ? slots++ : freeSlots.poll();
+            ByteBuffer record = ByteBuffer.allocate(SLOT_SIZE);
+            record.put(STATE, LIVE);
+            record.put(LENGTH, (byte) bytes.length);
+            for (int i = 0; i < bytes.length; i++) {
+                record.put(BARCODE + i, bytes[i]);
+            }
+            record.putInt(STOCK, stock);
+            channel.write(record, (long) slot * SLOT_SIZE);
+            ordinals.put(barcode, slot);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Free the slot of a deleted movie
+     * @param barcode the barcode of the movie
+     */
+    public synchronized void remove(String barcode) {
+        Integer slot = ordinals.remove(barcode);
+        if (slot == null || channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer state = ByteBuffer.allocate(1);
+            state.put(0, FREE);
+            channel.write(state, (long) slot * SLOT_SIZE + STATE);
+            freeSlots.add(slot);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Make every write so far durable, called by the write-behind flusher
+     */
+    public synchronized void force() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Discard every slot, called once the csv holds the current stock of every movie
+     */
+    public synchronized void clear() {
+        ordinals.clear();
+        freeSlots.clear();
+        slots = 0;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.truncate(0);
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package database;
+
+import model.Movie;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Full-text index over the title, genre and release year of every movie, ranked with BM25.
+ * Each term keeps a posting list of the movies it appears in and how often, a search adds up the scores of
+ * the query terms' postings only and keeps the best results in a bounded heap.
+ */
+public class TextIndex implements MovieIndex {
+
+    // the usual BM25 constants, term frequency saturation and document length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Map<String, Map<String, Integer>> postings;
+
+    private final Map<String, Integer> lengthByBarcode;
+
+    private long totalLength;
+
+    public TextIndex() {
+        postings = new HashMap<>();
+        lengthByBarcode = new HashMap<>();
+        totalLength = 0;
+    }
+
+    @Override
+    public void add(Movie movie) {
+        List<String> terms = terms(movie);
+        lengthByBarcode.put(movie.getBarcode(), terms.size());
+        totalLength += terms.size();
+        for (String term : terms) {
+            postings.computeIfAbsent(term, k -> new HashMap<>()).merge(movie.getBarcode(), 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public void remove(Movie movie) {
+        Integer length = lengthByBarcode.remove(movie.getBarcode());
+        if (length == null) {
+            return;
+        }
+        totalLength -= length;
+        for (String term : new LinkedHashSet<>(terms(movie))) {
+            Map<String, Integer> list = postings.get(term);
+            if (list != null) {
+                list.remove(movie.getBarcode());
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+        lengthByBarcode.clear();
+        totalLength = 0;
+    }
+
+    /**
+     * @param query words to look for in any order, e.g. "dark comedy 2013"
+     * @param limit the most results to return
+     * @return barcodes of the best matching movies, most relevant first
+     */
+    public List<String> search(String query, int limit) {
+        if (limit <= 0 || lengthByBarcode.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int movies = lengthByBarcode.size();
+        double averageLength = (double) totalLength / movies;
+        Map<String, Double> scores = new HashMap<>();
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Map<String, Integer> list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (movies - list.size() + 0.5) / (list.size() + 0.5));
+            for (Map.Entry<String, Integer> posting : list.entrySet()) {
+                int tf = posting.getValue();
+                double norm = K1 * (1 - B + B * lengthByBarcode.get(posting.getKey()) / averageLength);
+                scores.merge(posting.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+            }
+        }
+
+        Comparator<Map.Entry<String, Double>> byScore = Map.Entry.<String, Double>comparingByValue()
+                .thenComparing(Map.Entry.<String, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(byScore);
+        for (Map.Entry<String, Double> score : scores.entrySet()) {
+            best.add(new AbstractMap.SimpleImmutableEntry<>(score.getKey(), score.getValue()));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<String> ranked = new ArrayList<>();
+        while (!best.isEmpty()) {
+            ranked.add(best.poll().getKey());
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * @return every term of the movie, repeated as often as it occurs
+     */
+    private static List<String> terms(Movie movie) {
+        List<String> terms = new ArrayList<>();
+        terms.addAll(tokenize(movie.getTitle()));
+        terms.addAll(tokenize(movie.getGenre()));
+        Integer year = ReleaseDates.year(movie.getReleaseDate());
+        if (year != null) {
+            terms.add(year.toString());
+        }
+        return terms;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TitleIndex.normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,216 @@
+package database;
+
+import model.Movie;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Trigram inverted index over lower-cased titles for substring and typo tolerant search.
+ * A title contains the query only if it contains every trigram of the query, so the posting lists of those
+ * trigrams are intersected, smallest first, and the few titles left are checked with a plain contains().
+ * Titles are padded with a space at each end so that short words and word boundaries have trigrams of their
+ * own, which fuzzy search relies on.
+ * Titles themselves aren't kept, candidates are checked against the title read back from the catalog, so a
+ * mapped catalog doesn't get a second copy of every title on the heap.
+ */
+public class TitleIndex implements MovieIndex {
+
+    static final int GRAM = 3;
+
+    // most posting entries a fuzzy search walks, longer lists are only checked against titles already found
+    private static final int MAX_POSTINGS = 20000;
+
+    // titles sharing a smaller fraction of trigrams with the query aren't worth showing
+    private static final double MIN_SIMILARITY = 0.2;
+
+    private final Map<String, Set<String>> postings;
+
+    private final Function<String, String> title;
+
+    private final Map<String, Integer> gramCountByBarcode;
+
+    /**
+     * @param title the title of an indexed movie by barcode
+     */
+    public TitleIndex(Function<String, String> title) {
+        this.title = title;
+        postings = new HashMap<>();
+        gramCountByBarcode = new HashMap<>();
+    }
+
+    @Override
+    public void add(Movie movie) {
+        if (movie.getTitle() == null) {
+            return;
+        }
+        Set<String> grams = grams(pad(normalize(movie.getTitle())));
+        gramCountByBarcode.put(movie.getBarcode(), grams.size());
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(movie.getBarcode());
+        }
+    }
+
+    @Override
+    public void remove(Movie movie) {
+        if (gramCountByBarcode.remove(movie.getBarcode()) == null) {
+            return;
+        }
+        for (String gram : grams(pad(normalize(movie.getTitle())))) {
+            Set<String> barcodes = postings.get(gram);
+            if (barcodes != null) {
+                barcodes.remove(movie.getBarcode());
+                if (barcodes.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+        gramCountByBarcode.clear();
+    }
+
+    /**
+     * @param query the text to look for, taken literally and ignoring case
+     * @return the barcodes of the movies whose title contains the query
+     */
+    public Set<String> search(String query) {
+        String q = normalize(query);
+        Set<String> matches = new HashSet<>();
+        if (q.length() < GRAM) {
+            // too short to have a trigram, check every title
+            for (String barcode : gramCountByBarcode.keySet()) {
+                if (titleContains(barcode, q)) {
+                    matches.add(barcode);
+                }
+            }
+            return matches;
+        }
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : grams(q)) {
+            Set<String> barcodes = postings.get(gram);
+            if (barcodes == null) {
+                return matches;
+            }
+            lists.add(barcodes);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        for (String barcode : lists.get(0)) {
+            if (inAll(barcode, lists) && titleContains(barcode, q)) {
+                matches.add(barcode);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Rank titles by the share of trigrams they have in common with the query, so misspelt queries still
+     * find the movie. Only the posting lists of the query's trigrams are read, never the whole catalog.
+     * @param query the text to look for, ignoring case
+     * @param limit the most results to return
+     * @return barcodes of the most similar titles, most similar first
+     */
+    public List<String> fuzzySearch(String query, int limit) {
+        Set<String> queryGrams = grams(pad(normalize(query)));
+        if (queryGrams.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : queryGrams) {
+            Set<String> barcodes = postings.get(gram);
+            if (barcodes != null) {
+                lists.add(barcodes);
+            }
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Map<String, Integer> shared = new HashMap<>();
+        int walked = 0;
+        for (Set<String> barcodes : lists) {
+            if (shared.isEmpty() || walked + barcodes.size() <= MAX_POSTINGS) {
+                for (String barcode : barcodes) {
+                    if (walked++ == MAX_POSTINGS) {
+                        break;
+                    }
+                    shared.merge(barcode, 1, Integer::sum);
+                }
+            } else {
+                for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+                    if (barcodes.contains(entry.getKey())) {
+                        entry.setValue(entry.getValue() + 1);
+                    }
+                }
+            }
+        }
+
+        // keep the best results in a min-heap of the given size
+        Comparator<Map.Entry<String, Double>> byScore = Map.Entry.<String, Double>comparingByValue()
+                .thenComparing(Map.Entry.<String, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(byScore);
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            int common = entry.getValue();
+            double score = (double) common / (queryGrams.size() + gramCountByBarcode.get(entry.getKey()) - common);
+            if (score >= MIN_SIMILARITY) {
+                best.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<String> ranked = new ArrayList<>();
+        while (!best.isEmpty()) {
+            ranked.add(best.poll().getKey());
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the distinct trigrams of an already normalized string
+     */
+    static Set<String> grams(String text) {
+        if (text.length() < GRAM) {
+            return Collections.emptySet();
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private boolean titleContains(String barcode, String query) {
+        return normalize(title.apply(barcode)).contains(query);
+    }
+
+    private static String pad(String title) {
+        return " " + title + " ";
+    }
+
+    private static boolean inAll(String barcode, List<Set<String>> lists) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(barcode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,141 @@
+package database;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A unit of work spanning several repositories on the calling thread.
+ * Each step is applied to its repository straight away and records how to undo itself. On rollback the
+ * undo actions run newest first. Journal records logged during the transaction are staged, on commit they are
+ * handed to each journal as one group and written by the write-behind flusher, on rollback they are dropped.
+ * The flusher waits for open transactions, so a background flush never writes half of one.
+ */
+public class Transaction implements AutoCloseable {
+
+    private static final ThreadLocal<Transaction> current = new ThreadLocal<>();
+
+    private final Deque<Runnable> undo;
+
+    private final List<Runnable> afterCommit;
+
+    private final Map<Journal, List<Object[]>> staged;
+
+    private boolean open;
+
+    private Transaction() {
+        undo = new ArrayDeque<>();
+        afterCommit = new ArrayList<>();
+        staged = new LinkedHashMap<>();
+        open = true;
+    }
+
+    /**
+     * Start a transaction on the calling thread
+     * @return the transaction, close it with try-with-resources
+     * @throws IllegalStateException if the thread already has an open transaction
+     */
+    public static Transaction begin() {
+        if (current.get() != null) {
+            throw new IllegalStateException("transaction already open on this thread");
+        }
+        WriteBehindFlusher.getInstance().beginTransaction();
+        Transaction tx = new Transaction();
+        current.set(tx);
+        return tx;
+    }
+
+    /**
+     * @return the open transaction of the calling thread, or null
+     */
+    public static Transaction current() {
+        return current.get();
+    }
+
+    /**
+     * Record how to undo a step that has just been applied
+     * @param action the compensating action
+     */
+    public void onRollback(Runnable action) {
+        undo.push(action);
+    }
+
+    /**
+     * Record a step that should only happen once the transaction commits
+     * @param action run after commit, on the committing thread
+     */
+    public void onCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    void stage(Journal journal, Object[] record) {
+        staged.computeIfAbsent(journal, k -> new ArrayList<>()).add(record);
+    }
+
+    /**
+     * Keep every step and queue its journal records for the next flush
+     */
+    public void commit() {
+        if (!open) {
+            return;
+        }
+        // queued before the transaction ends, so a flush waiting on it can't miss them
+        for (Map.Entry<Journal, List<Object[]>> group : staged.entrySet()) {
+            group.getKey().logGroup(group.getValue());
+        }
+        staged.clear();
+        undo.clear();
+        end();
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        afterCommit.clear();
+    }
+
+    /**
+     * Undo every step, newest first. A failing undo action doesn't stop the rest.
+     */
+    public void rollback() {
+        try {
+            while (!undo.isEmpty()) {
+                try {
+                    undo.pop().run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            // the undo actions log records of their own, they are dropped with the rest
+            staged.clear();
+            afterCommit.clear();
+            end();
+        }
+    }
+
+    /**
+     * Roll back unless the transaction was committed
+     */
+    @Override
+    public void close() {
+        if (open) {
+            rollback();
+        }
+    }
+
+    private boolean end() {
+        if (!open) {
+            return false;
+        }
+        open = false;
+        current.remove();
+        WriteBehindFlusher.getInstance().endTransaction();
+        return true;
+    }
+}
@@ -2,11 +2,9 @@ package database;
 
 import model.User;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
-import java.io.FileReader;
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
@@ -19,6 +17,9 @@ public class UserRepository implements DatabaseAccess, Subject {
 
     private final Map<String, User> userAccounts;
 
+    // usernames of the customer accounts, in order, for paging through them
+    private final NavigableSet<String> customerNames;
+
     private final List<Observer> observers;
 
     private User loggedInUser;
@@ -26,12 +27,20 @@ public class UserRepository implements DatabaseAccess, Subject {
     private final String ADMIN_CSV_PATH;
     private final String USER_CSV_PATH;
 
+    private final Journal journal;
+
+    private final SnapshotImage image;
+
     private UserRepository(String adminPath, String userPath) {
         ADMIN_CSV_PATH = adminPath;
         USER_CSV_PATH = userPath;
         adminEmails = new HashSet<>();
         userAccounts = new HashMap<>();
+        customerNames = new TreeSet<>();
         observers = new ArrayList<>();
+        journal = new Journal(userPath);
+        image = new SnapshotImage(journal, userPath, adminPath);
+        WriteBehindFlusher.getInstance().register(this);
         loadCSV();
     }
 
@@ -48,50 +57,118 @@ public class UserRepository implements DatabaseAccess, Subject {
 
     @Override
     public synchronized void loadCSV() {
+        if (image.load(this::readImage, this::replayRecord)) {
+            return;
+        }
+        userAccounts.clear();
+        customerNames.clear();
+        adminEmails.clear();
         try {
-            CSVParser parser = new CSVParser(new FileReader(USER_CSV_PATH), CSVFormat.RFC4180
-                    .withDelimiter(',')
-                    .withHeader("email", "username", "password", "account", "loyaltyPoints"));
-            List<CSVRecord> records = parser.getRecords();
-            for (int i = 1; i < records.size(); i++) {
+            CsvSnapshotReader reader = new CsvSnapshotReader(USER_CSV_PATH);
+            // skip the header row
+            reader.nextRow();
+            while (reader.nextRow()) {
                 User user = new User();
-                user.setUsername(records.get(i).get("username"));
-                user.setEmailAddress(records.get(i).get("email"));
-                user.setPassword(records.get(i).get("password"));
-                user.setAccountType(records.get(i).get("account"));
-                user.setLoyaltyPoints(Integer.parseInt(records.get(i).get("loyaltyPoints")));
-                userAccounts.put(records.get(i).get("username"), user);
+                user.setEmailAddress(reader.readString());
+                user.setUsername(reader.readString());
+                user.setPassword(reader.readString());
+                user.setAccountType(reader.readString());
+                user.setLoyaltyPoints(reader.readInt());
+                putUser(user);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal.replay(this::replayRecord);
 
-            CSVParser adminParser = new CSVParser(new FileReader(ADMIN_CSV_PATH), CSVFormat.RFC4180.withDelimiter(',').withHeader("email"));
-            List<CSVRecord> adminRecords = adminParser.getRecords();
-            for (int i = 1; i < adminRecords.size(); i++) {
-                adminEmails.add(adminRecords.get(i).get("email"));
+        try {
+            CsvSnapshotReader adminReader = new CsvSnapshotReader(ADMIN_CSV_PATH);
+            // skip the header row
+            adminReader.nextRow();
+            while (adminReader.nextRow()) {
+                adminEmails.add(adminReader.readString());
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void readImage(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmailAddress(SnapshotImage.readString(in));
+            user.setUsername(SnapshotImage.readString(in));
+            user.setPassword(SnapshotImage.readString(in));
+            user.setAccountType(SnapshotImage.readString(in));
+            user.setLoyaltyPoints(in.readInt());
+            putUser(user);
+        }
+        int admins = in.readInt();
+        for (int i = 0; i < admins; i++) {
+            adminEmails.add(SnapshotImage.readString(in));
+        }
+    }
+
     @Override
-    public synchronized void updateCSV() {
-        try (CSVPrinter printer = new CSVPrinter(new FileWriter(USER_CSV_PATH, false),
-                CSVFormat.RFC4180
-                        .withDelimiter(',')
-                        .withHeader(
-                                "email",
-                                "username",
-                                "password",
-                                "account",
-                                "loyaltyPoints"
-                        ))) {
-            for (Map.Entry<String,User> entry : userAccounts.entrySet()) {
-                User u = entry.getValue();
-                printer.printRecord(u.getEmailAddress(), u.getUsername(), u.getPassword(), u.getAccountType(), u.getLoyaltyPoints());
+    public synchronized void saveImage() {
+        image.save(out -> {
+            out.writeInt(userAccounts.size());
+            for (User u : userAccounts.values()) {
+                SnapshotImage.writeString(out, u.getEmailAddress());
+                SnapshotImage.writeString(out, u.getUsername());
+                SnapshotImage.writeString(out, u.getPassword());
+                SnapshotImage.writeString(out, u.getAccountType());
+                out.writeInt(u.getLoyaltyPoints());
             }
-            notifyObservers();
-        } catch (Exception e) {
-            e.printStackTrace();
+            out.writeInt(adminEmails.size());
+            for (String email : adminEmails) {
+                SnapshotImage.writeString(out, email);
+            }
+        });
+    }
+
+    /**
+     * Apply a journal record on top of the loaded snapshot
+     * @param record the journal record
+     */
+    private void replayRecord(CSVRecord record) {
+        if (record.get(0).equals(Journal.PUT)) {
+            User user = new User();
+            user.setEmailAddress(record.get(1));
+            user.setUsername(record.get(2));
+            user.setPassword(record.get(3));
+            user.setAccountType(record.get(4));
+            user.setLoyaltyPoints(Integer.parseInt(record.get(5)));
+            putUser(user);
+        } else if (record.get(0).equals(Journal.DELETE)) {
+            removeUser(record.get(1));
+        }
+    }
+
+    /**
+     * Write the pending journal records, the snapshot is only rewritten once the journal grows too large
+     */
+    @Override
+    public synchronized void updateCSV() {
+        if (journal.needsCheckpoint()) {
+            journal.checkpoint(CSVFormat.RFC4180
+                    .withDelimiter(',')
+                    .withHeader(
+                            "email",
+                            "username",
+                            "password",
+                            "account",
+                            "loyaltyPoints"
+                    ), printer -> {
+                for (Map.Entry<String,User> entry : userAccounts.entrySet()) {
+                    User u = entry.getValue();
+                    printer.printRecord(u.getEmailAddress(), u.getUsername(), u.getPassword(), u.getAccountType(), u.getLoyaltyPoints());
+                }
+            });
+            saveImage();
+        } else {
+            journal.flush();
         }
     }
 
@@ -103,37 +180,60 @@ public class UserRepository implements DatabaseAccess, Subject {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        journal.truncate();
+        image.delete();
+    }
+
+    private void putUser(User u) {
+        userAccounts.put(u.getUsername(), u);
+        if ("customer".equals(u.getAccountType())) {
+            customerNames.add(u.getUsername());
+        } else {
+            customerNames.remove(u.getUsername());
+        }
+    }
+
+    private void removeUser(String username) {
+        userAccounts.remove(username);
+        customerNames.remove(username);
     }
 
-    public void awardLoyaltyPoint(String username) {
+    private void logPut(User u) {
+        journal.log(Journal.PUT, u.getEmailAddress(), u.getUsername(), u.getPassword(), u.getAccountType(), u.getLoyaltyPoints());
+        markDirty();
+        notifyObservers(u.getUsername());
+    }
+
+    public synchronized void awardLoyaltyPoint(String username) {
         User u = userAccounts.get(username);
         u.setLoyaltyPoints(u.getLoyaltyPoints()+1);
-        userAccounts.replace(username, u);
-        updateCSV();
+        putUser(u);
+        logPut(u);
     }
 
-    public void changeUsername(String newUsername, String oldUsername) {
+    public synchronized void changeUsername(String newUsername, String oldUsername) {
         // replace user
         User u = userAccounts.get(oldUsername);
         u.setUsername(newUsername);
-        userAccounts.remove(oldUsername);
-        userAccounts.put(newUsername, u);
+        removeUser(oldUsername);
+        putUser(u);
 
         // set logged in user
         if (loggedInUser != null) {
             loggedInUser.setUsername(newUsername);
         }
-        updateCSV();
+        journal.log(Journal.DELETE, oldUsername);
+        logPut(u);
     }
 
-    public boolean changePassword(String newPassword, String username) {
+    public synchronized boolean changePassword(String newPassword, String username) {
         if (userAccounts.containsKey(username)) {
             if (validatePassword(newPassword)) {
                 User u = userAccounts.get(username);
-                userAccounts.remove(u.getUsername());
+                removeUser(u.getUsername());
                 u.setPassword(newPassword);
-                userAccounts.put(username, u);
-                updateCSV();
+                putUser(u);
+                logPut(u);
                 return true;
             } else {
                 return false;
@@ -143,14 +243,14 @@ public class UserRepository implements DatabaseAccess, Subject {
         }
     }
 
-    public boolean changeEmail(String newEmail, String username) {
+    public synchronized boolean changeEmail(String newEmail, String username) {
         if (userAccounts.containsKey(username)) {
             if (validateEmail(newEmail)) {
                 User u = userAccounts.get(username);
-                userAccounts.remove(u.getUsername());
+                removeUser(u.getUsername());
                 u.setEmailAddress(newEmail);
-                userAccounts.put(username, u);
-                updateCSV();
+                putUser(u);
+                logPut(u);
                 return true;
             } else {
                 return false;
@@ -160,12 +260,14 @@ public class UserRepository implements DatabaseAccess, Subject {
         }
     }
 
-    public void deleteUser(String username) {
-        userAccounts.remove(username);
-        updateCSV();
+    public synchronized void deleteUser(String username) {
+        removeUser(username);
+        journal.log(Journal.DELETE, username);
+        markDirty();
+        notifyObservers();
     }
 
-    public List<User> getAllCustomers() {
+    public synchronized List<User> getAllCustomers() {
         List<User> customers = new ArrayList<>();
         for (Map.Entry<String, User> entry : userAccounts.entrySet()) {
             if (entry.getValue().getAccountType().equals("customer")) {
@@ -175,6 +277,25 @@ public class UserRepository implements DatabaseAccess, Subject {
         return customers;
     }
 
+    /**
+     * @param cursor the username the previous page ended at, or null for the first page
+     * @param limit the page size
+     * @return a page of the customer accounts in username order
+     */
+    public synchronized Page<User> getCustomers(String cursor, int limit) {
+        Page.checkLimit(limit);
+        NavigableSet<String> after = cursor == null ? customerNames : customerNames.tailSet(cursor, false);
+        Iterator<String> names = after.iterator();
+        List<User> customers = new ArrayList<>();
+        String last = null;
+        while (names.hasNext() && customers.size() < limit) {
+            last = names.next();
+            customers.add(userAccounts.get(last));
+        }
+        String next = names.hasNext() ? last : null;
+        return new Page<>(customers, next, customerNames.size());
+    }
+
     public User getLoggedInUser() {
         return loggedInUser;
     }
@@ -184,10 +305,10 @@ public class UserRepository implements DatabaseAccess, Subject {
         return userAccounts.getOrDefault(username, null);
     }
 
-    public void updateUser(User u) {
+    public synchronized void updateUser(User u) {
         if (userAccounts.containsKey(u.getUsername())) {
-            userAccounts.replace(u.getUsername(), u);
-            updateCSV();
+            putUser(u);
+            logPut(u);
         }
     }
 
@@ -195,32 +316,32 @@ public class UserRepository implements DatabaseAccess, Subject {
         return loggedInUser != null && loggedInUser.isAdmin();
     }
 
-    public boolean register(User user)  {
+    public synchronized boolean register(User user)  {
         if (!validateNewUserRegistration(user)) {
             return false;
         } else {
             if (user.getAccountType().equals("employee") && adminEmails.contains(user.getEmailAddress())) {
                 user.setAccountType("admin");
             }
-            userAccounts.put(user.getUsername(), user);
-            updateCSV();
+            putUser(user);
+            logPut(user);
             return true;
         }
     }
 
-    public boolean saveGuestAccount(User user) {
+    public synchronized boolean saveGuestAccount(User user) {
         if (user != null) {
             if (user.getUsername() != null && !user.getUsername().equals("")) {
                 user.setAccountType("guest");
-                userAccounts.put(user.getUsername(), user);
-                updateCSV();
+                putUser(user);
+                logPut(user);
                 return true;
             }
         }
         return false;
     }
 
-    public boolean login(String username, String password) {
+    public synchronized boolean login(String username, String password) {
         if (userAccounts.containsKey(username)) {
             if (userAccounts.get(username).getPassword().equals(password)) {
                 loggedInUser = userAccounts.get(username);
@@ -247,6 +368,15 @@ public class UserRepository implements DatabaseAccess, Subject {
         }
     }
 
+    /**
+     * Tell observers only this account changed
+     */
+    private void notifyObservers(String username) {
+        for (Observer o : observers) {
+            o.update(username);
+        }
+    }
+
     private boolean validateNewUserRegistration(User newUser) {
         return newUser != null && !newUser.getUsername().equals("") && validatePassword(newUser.getPassword())
                 && validateEmail(newUser.getEmailAddress()) && !newUser.getAccountType().equals("");
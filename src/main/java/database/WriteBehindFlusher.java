@@ -0,0 +1,152 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Shared write-behind flusher for the csv tables.
+ * Repositories mark themselves dirty after a change, and a background thread calls updateCSV() on every
+ * dirty table once the max lag has passed, so a burst of changes to a table results in a single write.
+ * A flush waits until no transaction is open, see {@link Transaction}.
+ * On exit the remaining changes are written and every registered table saves its snapshot image.
+ */
+public class WriteBehindFlusher {
+
+    private static final long DEFAULT_MAX_LAG = 1000;
+
+    private static long maxLag = DEFAULT_MAX_LAG;
+
+    private volatile static WriteBehindFlusher instance;
+
+    private final Set<DatabaseAccess> dirtyTables;
+
+    private final Set<DatabaseAccess> tables;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ReentrantReadWriteLock transactionLock;
+
+    private boolean flushScheduled;
+
+    private WriteBehindFlusher() {
+        dirtyTables = new LinkedHashSet<>();
+        tables = new LinkedHashSet<>();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "csv-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flushScheduled = false;
+        transactionLock = new ReentrantReadWriteLock();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "csv-flusher-shutdown"));
+    }
+
+    public static WriteBehindFlusher getInstance() {
+        if (instance == null) {
+            synchronized (WriteBehindFlusher.class) {
+                if (instance == null) {
+                    instance = new WriteBehindFlusher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param millis the longest a change may wait in memory before it is written to its csv
+     */
+    public static void setMaxLag(long millis) {
+        maxLag = millis;
+    }
+
+    /**
+     * Save a snapshot image of the table when the app exits
+     * @param table the table to save
+     */
+    public void register(DatabaseAccess table) {
+        synchronized (tables) {
+            tables.add(table);
+        }
+    }
+
+    /**
+     * Stop saving a table on exit and drop any write still pending for it
+     * @param table the table to forget
+     */
+    public void unregister(DatabaseAccess table) {
+        synchronized (tables) {
+            tables.remove(table);
+        }
+        synchronized (dirtyTables) {
+            dirtyTables.remove(table);
+        }
+    }
+
+    /**
+     * Schedule a table to be written, repeated calls before the flush are coalesced
+     * @param table the table that changed
+     */
+    public void markDirty(DatabaseAccess table) {
+        synchronized (dirtyTables) {
+            dirtyTables.add(table);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, maxLag, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Write every dirty table now on the calling thread, once no transaction is open.
+     * Must not be called from inside a transaction.
+     */
+    public void flush() {
+        transactionLock.writeLock().lock();
+        try {
+            List<DatabaseAccess> dirty;
+            synchronized (dirtyTables) {
+                dirty = new ArrayList<>(dirtyTables);
+                dirtyTables.clear();
+                flushScheduled = false;
+            }
+            for (DatabaseAccess table : dirty) {
+                table.updateCSV();
+            }
+        } finally {
+            transactionLock.writeLock().unlock();
+        }
+    }
+
+    void beginTransaction() {
+        transactionLock.readLock().lock();
+    }
+
+    void endTransaction() {
+        transactionLock.readLock().unlock();
+    }
+
+    /**
+     * Write every dirty table and stop the background thread
+     */
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    private void close() {
+        flush();
+        List<DatabaseAccess> registered;
+        synchronized (tables) {
+            registered = new ArrayList<>(tables);
+        }
+        for (DatabaseAccess table : registered) {
+            table.saveImage();
+        }
+    }
+}
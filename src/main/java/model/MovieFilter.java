@@ -0,0 +1,65 @@
+package model;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A faceted catalog filter. Values within a facet are alternatives, the facets are all required, and an
+ * empty facet doesn't filter at all.
+ */
+public class MovieFilter {
+
+    private final Set<String> genres;
+
+    private final Set<Integer> priceBands;
+
+    private final Set<Integer> releaseYears;
+
+    private boolean inStockOnly;
+
+    public MovieFilter() {
+        genres = new LinkedHashSet<>();
+        priceBands = new LinkedHashSet<>();
+        releaseYears = new LinkedHashSet<>();
+        inStockOnly = false;
+    }
+
+    public Set<String> getGenres() {
+        return genres;
+    }
+
+    public MovieFilter addGenre(String genre) {
+        genres.add(genre);
+        return this;
+    }
+
+    /**
+     * @return indexes into the price bands of the facet index
+     */
+    public Set<Integer> getPriceBands() {
+        return priceBands;
+    }
+
+    public MovieFilter addPriceBand(int priceBand) {
+        priceBands.add(priceBand);
+        return this;
+    }
+
+    public Set<Integer> getReleaseYears() {
+        return releaseYears;
+    }
+
+    public MovieFilter addReleaseYear(int year) {
+        releaseYears.add(year);
+        return this;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    public MovieFilter setInStockOnly(boolean inStockOnly) {
+        this.inStockOnly = inStockOnly;
+        return this;
+    }
+}
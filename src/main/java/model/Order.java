@@ -5,7 +5,7 @@ import java.util.Map;
 public class Order {
     private int orderId;
     private String username;
-    private String orderStatus;
+    private OrderStatus orderStatus;
     private String orderDate;
     private String dueDate;
     private boolean isOverdue;
@@ -37,14 +37,18 @@ public class Order {
         this.username = username;
     }
 
-    public String getOrderStatus() {
+    public OrderStatus getOrderStatus() {
         return orderStatus;
     }
 
-    public void setOrderStatus(String orderStatus) {
+    public void setOrderStatus(OrderStatus orderStatus) {
         this.orderStatus = orderStatus;
     }
 
+    public void setOrderStatus(String orderStatus) {
+        this.orderStatus = OrderStatus.parse(orderStatus);
+    }
+
     public String getOrderDate() {
         return orderDate;
     }
@@ -0,0 +1,31 @@
+package model;
+
+import java.util.Locale;
+
+/**
+ * The stages of an order, in the order they happen
+ */
+public enum OrderStatus {
+    PROCESSED,
+    SHIPPED,
+    DELIVERED,
+    COMPLETED;
+
+    /**
+     * @param status the name of a status as stored in the csv, in any case
+     * @return the status, or null if the string is null or empty
+     * @throws IllegalArgumentException if the string isn't the name of a status
+     */
+    public static OrderStatus parse(String status) {
+        if (status == null || status.trim().isEmpty()) {
+            return null;
+        }
+        String name = status.trim().toUpperCase(Locale.ROOT);
+        for (OrderStatus s : values()) {
+            if (s.name().equals(name)) {
+                return s;
+            }
+        }
+        throw new IllegalArgumentException("unknown order status: " + status);
+    }
+}
@@ -8,9 +8,16 @@ public class RentedMovie {
 
     private final String barcode;
 
+    private final int quantity;
+
     public RentedMovie(int orderId, String barcode) {
+        this(orderId, barcode, 1);
+    }
+
+    public RentedMovie(int orderId, String barcode, int quantity) {
         this.orderId = orderId;
         this.barcode = barcode;
+        this.quantity = quantity;
     }
 
     public int getOrderId() {
@@ -21,12 +28,21 @@ public class RentedMovie {
         return barcode;
     }
 
+    public int getQuantity() {
+        return quantity;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RentedMovie that = (RentedMovie) o;
-        return orderId == that.orderId && Objects.equals(barcode, that.barcode);
+        return orderId == that.orderId && quantity == that.quantity && Objects.equals(barcode, that.barcode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(orderId, barcode, quantity);
     }
 
 }
@@ -1,6 +1,7 @@
 package scheduled_tasks;
 
 import model.Order;
+import model.OrderStatus;
 import services.OrderService;
 import view.StoreFront;
 
@@ -17,12 +18,10 @@ public class DeliverOrders extends TimerTask {
 
     @Override
     public void run() {
-        List<Order> orders = orderService.getAllOrders();
+        List<Order> orders = orderService.getOrdersWithStatus(OrderStatus.SHIPPED);
         for (Order o : orders) {
-            if (o.getOrderStatus().equals("SHIPPED")) {
-                orderService.changeOrderStatus(o.getOrderId(), "DELIVERED");
-                System.out.println("Delivered Order " + o.getOrderId() + " to " + o.getUsername());
-            }
+            orderService.changeOrderStatus(o.getOrderId(), OrderStatus.DELIVERED);
+            System.out.println("Delivered Order " + o.getOrderId() + " to " + o.getUsername());
         }
     }
 }
@@ -1,6 +1,7 @@
 package scheduled_tasks;
 
 import model.Order;
+import model.OrderStatus;
 import services.OrderService;
 import view.StoreFront;
 import warehouses.WarehouseFactory;
@@ -20,13 +21,11 @@ public class ShipOrders extends TimerTask {
 
     @Override
     public void run() {
-        List<Order> orders = orderService.getAllOrders();
+        List<Order> orders = orderService.getOrdersWithStatus(OrderStatus.PROCESSED);
         for (Order o : orders) {
-            if (o.getOrderStatus().equals("PROCESSED")) {
-                // send the order to warehouse to be shipped
-                warehouseFactory.getWarehouse(o).ship(o);
-                orderService.changeOrderStatus(o.getOrderId(), "SHIPPED");
-            }
+            // send the order to warehouse to be shipped
+            warehouseFactory.getWarehouse(o).ship(o);
+            orderService.changeOrderStatus(o.getOrderId(), OrderStatus.SHIPPED);
         }
     }
 }
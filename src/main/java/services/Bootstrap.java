@@ -0,0 +1,91 @@
+package services;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Loads every repository at the same time on a thread pool when the app starts.
+ * Each service is published as soon as its repository has loaded, a caller that needs a service
+ * before then simply blocks in getInstance() until it is ready.
+ */
+public class Bootstrap {
+
+    private static final int LOADER_THREADS = 6;
+
+    private static CompletableFuture<MovieService> movies;
+    private static CompletableFuture<UserService> users;
+
+    // how long each table took to load, in milliseconds
+    private static final Map<String, Long> loadTimes = new ConcurrentHashMap<>();
+
+    private Bootstrap() {}
+
+    /**
+     * Start loading every repository, the csv paths of every service must be set first
+     */
+    public static synchronized void start() {
+        if (movies != null) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+            Thread t = new Thread(r, "repository-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        movies = load("movies", MovieService::getInstance, pool);
+        users = load("users", UserService::getInstance, pool);
+        load("addresses", AddressService::getInstance, pool);
+        load("billing", BillingService::getInstance, pool);
+        CompletableFuture<RentedService> rented = load("rented", RentedService::getInstance, pool);
+        load("orders", OrderService::getInstance, pool);
+        // title completions favour the movies rented most, which needs both tables
+        movies.thenAcceptBoth(rented, (m, r) -> m.setPopularity(r.countRentedCopies()))
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                });
+        pool.shutdown();
+    }
+
+    /**
+     * Block until the catalog and user accounts are loaded, which is all the store front needs to be usable
+     */
+    public static void awaitCatalog() {
+        movies.join();
+        users.join();
+    }
+
+    /**
+     * @return the milliseconds each table has taken to load so far, by table name
+     */
+    public static Map<String, Long> getLoadTimes() {
+        return Collections.unmodifiableMap(loadTimes);
+    }
+
+    private static <T> CompletableFuture<T> load(String table, Supplier<T> loader, ExecutorService pool) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return loader.get();
+            } finally {
+                loadTimes.put(table, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }, pool);
+        // nothing joins most of these, so a failed load has to be reported here or it goes unnoticed
+        future.whenComplete((service, e) -> {
+            if (e != null) {
+                System.err.println("Failed to load " + table + " after " + loadTimes.get(table) + "ms");
+                e.printStackTrace();
+            } else {
+                System.out.println("Loaded " + table + " in " + loadTimes.get(table) + "ms");
+            }
+        });
+        return future;
+    }
+}
@@ -1,21 +1,31 @@
 package services;
 
+import database.FacetCounts;
 import database.MovieRepository;
 import database.Observer;
+import database.Page;
 import model.Movie;
+import model.MovieFilter;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MovieService {
 
     private static String MOVIE_CSV_PATH;
 
+    private static String CATALOG_PATH;
+
     private volatile static MovieService instance;
 
     private final MovieRepository movieRepository;
 
     private MovieService() {
-        movieRepository = MovieRepository.getInstance(MOVIE_CSV_PATH);
+        movieRepository = MovieRepository.getInstance(MOVIE_CSV_PATH, CATALOG_PATH);
     }
 
     public static MovieService getInstance() {
@@ -33,6 +43,14 @@ public class MovieService {
         MOVIE_CSV_PATH = path;
     }
 
+    /**
+     * Keep the catalog off the heap in a memory-mapped file, for inventories too large for the heap
+     * @param path the file to map the catalog from
+     */
+    public static void setCatalogPath(String path) {
+        CATALOG_PATH = path;
+    }
+
     public boolean addMovie(Movie movie, Integer quantity) {
         return movieRepository.addMovie(movie, quantity);
     }
@@ -45,14 +63,77 @@ public class MovieService {
         return movieRepository.getMovieByTitle(movieTitle);
     }
 
+    public Map<Movie,Integer> searchMovies(String query, int limit) {
+        return movieRepository.searchMovies(query, limit);
+    }
+
+    public Map<Movie,Integer> getMoviesLikeTitle(String movieTitle, int limit) {
+        return movieRepository.getMoviesLikeTitle(movieTitle, limit);
+    }
+
+    /**
+     * @param prefix what has been typed in the search box so far
+     * @param limit the most titles to return
+     * @return titles of the most rented movies matching the prefix, without duplicates
+     */
+    public List<String> getTitleCompletions(String prefix, int limit) {
+        Set<String> titles = new LinkedHashSet<>();
+        for (Movie m : movieRepository.getTitleCompletions(prefix, limit)) {
+            titles.add(m.getTitle());
+        }
+        return new ArrayList<>(titles);
+    }
+
+    public void setPopularity(Map<String,Integer> rentals) {
+        movieRepository.setPopularity(rentals);
+    }
+
     public Map<Movie,Integer> getAllMovies() {
         return movieRepository.getAllMovies();
     }
 
+    /**
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     */
+    public Page<Movie> getMovies(String cursor, int limit) {
+        return movieRepository.getMovies(cursor, limit);
+    }
+
     public Map<Movie,Integer> getMoviesByCategory(String genre) {
         return movieRepository.getMoviesByCategory(genre);
     }
 
+    public Map<Movie,Integer> filterMovies(MovieFilter filter) {
+        return movieRepository.filterMovies(filter);
+    }
+
+    /**
+     * Page through the movies in a price range, e.g. everything under $5
+     * @param min the lowest price, or null
+     * @param max the highest price, or null
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     */
+    public Page<Movie> getMoviesByPrice(Double min, Double max, String cursor, int limit) {
+        return movieRepository.getMoviesByPrice(min, max, cursor, limit);
+    }
+
+    /**
+     * Page through the movies released in a range of dates
+     * @param from the earliest release date, or null
+     * @param to the latest release date, or null
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     */
+    public Page<Movie> getMoviesReleasedBetween(LocalDate from, LocalDate to, String cursor, int limit) {
+        return movieRepository.getMoviesReleasedBetween(from, to, cursor, limit);
+    }
+
+    public FacetCounts countFacets(MovieFilter filter) {
+        return movieRepository.countFacets(filter);
+    }
+
     public Movie getMovie(String barcode) {
         return movieRepository.getMovie(barcode);
     }
@@ -65,10 +146,18 @@ public class MovieService {
         return movieRepository.rentMovies(movies);
     }
 
+    public void returnMovies(Map<Movie,Integer> movies) {
+        movieRepository.returnMovies(movies);
+    }
+
     public void returnMovie(String barcode) {
         movieRepository.returnMovie(barcode);
     }
 
+    public void returnMovie(String barcode, int quantity) {
+        movieRepository.returnMovie(barcode, quantity);
+    }
+
     public void removeStock(String barcode) {
         movieRepository.removeStock(barcode);
     }
@@ -2,9 +2,12 @@ package services;
 
 import database.Observer;
 import database.OrderRepository;
+import database.Page;
+import database.Transaction;
 import model.Cart;
 import model.Movie;
 import model.Order;
+import model.OrderStatus;
 import model.User;
 import model.payments.CreditCard;
 import model.payments.LoyaltyPoints;
@@ -13,6 +16,7 @@ import model.payments.PaymentVisitor;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
@@ -46,7 +50,7 @@ public class OrderService implements PaymentVisitor {
 
     public boolean cancelOrder(int orderNumber) {
         Order o = orderRepository.getOrder(orderNumber);
-        if (o == null || !o.getOrderStatus().equals("PROCESSED")) {
+        if (o == null || o.getOrderStatus() != OrderStatus.PROCESSED) {
             return false;
         } else {
             orderRepository.cancelOrder(orderNumber);
@@ -64,39 +68,60 @@ public class OrderService implements PaymentVisitor {
         } else {
             username = cart.getUsername();
         }
-        if (getAddressService().getAddress(username) != null) {
-            if (paymentService.acceptPayment(this, cart)) {
-                if (getMovieService().rentMovies(cart.getMoviesInCart())) {
-                    Order o = new Order();
-                    o.setUsername(username);
-                    o.setOrderId(orderRepository.getTotalOrders());
-                    o.setOrderDate(getDate());
-                    o.setDueDate(getDueDate());
-                    o.setOrderStatus("PROCESSED");
-                    o.setMovies(cart.getMoviesInCart());
-                    orderRepository.createOrder(o);
-                    getRentedService().storeMovies(o);
-                    if (u != null) {
-                        getUserService().awardLoyaltyPoint(username);
-                    }
-                    return o;
-                } else {
-                    return null;
-                }
-            } else {
+        if (getAddressService().getAddress(username) == null) {
+            return null;
+        }
+        // payment, stock, order and rented rows are one unit, a failed step undoes the ones before it
+        try (Transaction tx = Transaction.begin()) {
+            if (!paymentService.acceptPayment(this, cart)) {
                 return null;
             }
-        } else {
-            return null;
+            Map<Movie,Integer> movies = cart.getMoviesInCart();
+            if (!getMovieService().rentMovies(movies)) {
+                return null;
+            }
+            tx.onRollback(() -> getMovieService().returnMovies(movies));
+            Order o = new Order();
+            o.setUsername(username);
+            o.setOrderId(orderRepository.getTotalOrders());
+            o.setOrderDate(getDate());
+            o.setDueDate(getDueDate());
+            o.setOrderStatus(OrderStatus.PROCESSED);
+            o.setMovies(movies);
+            orderRepository.createOrder(o);
+            tx.onRollback(() -> orderRepository.deleteOrder(o.getOrderId()));
+            getRentedService().storeMovies(o);
+            tx.onRollback(() -> getRentedService().deleteMovies(o.getOrderId()));
+            if (u != null) {
+                getUserService().awardLoyaltyPoint(username);
+            }
+            tx.commit();
+            return o;
         }
     }
 
+    public void changeOrderStatus(int orderNumber, OrderStatus status) {
+        orderRepository.changeOrderStatus(orderNumber, status);
+    }
+
     public void changeOrderStatus(int orderNumber, String status) {
-        Order o = orderRepository.getOrder(orderNumber);
-        if (o != null) {
-            o.setOrderStatus(status);
-        }
-        orderRepository.updateOrder(orderNumber, o);
+        changeOrderStatus(orderNumber, OrderStatus.parse(status));
+    }
+
+    public List<Order> getOrdersWithStatus(OrderStatus status) {
+        return orderRepository.getOrdersWithStatus(status);
+    }
+
+    /**
+     * Flag the orders that are due today or earlier as overdue
+     * @return the orders that weren't overdue before
+     */
+    public List<Order> markOverdueOrders() {
+        return orderRepository.markOverdue(LocalDate.now().toEpochDay());
+    }
+
+    public List<Order> getOverdueOrders() {
+        return orderRepository.getOverdueOrders();
     }
 
     public void deleteOrder(int orderNumber) {
@@ -111,21 +136,37 @@ public class OrderService implements PaymentVisitor {
         return orderRepository.getAllOrders();
     }
 
+    /**
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     */
+    public Page<Order> getOrders(String cursor, int limit) {
+        return orderRepository.getOrders(cursor, limit);
+    }
+
+    public Page<Order> getOrdersByCustomer(String username, String cursor, int limit) {
+        return orderRepository.getOrdersByCustomer(username, cursor, limit);
+    }
+
     public List<Order> getOrdersByCustomer(String username) {
         return orderRepository.getOrdersByCustomer(username);
     }
 
+    public void changeUsername(String newUsername, String oldUsername) {
+        orderRepository.changeUsername(newUsername, oldUsername);
+    }
+
     public Order getOrder(int orderNumber) {
         return orderRepository.getOrder(orderNumber);
     }
 
     public boolean returnOrder(int orderNumber) {
         Order o = orderRepository.getOrder(orderNumber);
-        if (o == null || !o.getOrderStatus().equals("DELIVERED")) {
+        if (o == null || o.getOrderStatus() != OrderStatus.DELIVERED) {
             return false;
         } else {
             o.setDueDate("");
-            o.setOrderStatus("COMPLETED");
+            o.setOrderStatus(OrderStatus.COMPLETED);
             o.setOverdue(false);
             orderRepository.returnOrder(o);
             getRentedService().returnMovies(orderNumber);
@@ -164,6 +205,14 @@ public class OrderService implements PaymentVisitor {
             User u = getUserService().getUser(cart.getUsername());
             u.setLoyaltyPoints(loyaltyPoints.getLoyaltyPoints() - deduction);
             getUserService().updateUser(u);
+            Transaction tx = Transaction.current();
+            if (tx != null) {
+                tx.onRollback(() -> {
+                    User r = getUserService().getUser(cart.getUsername());
+                    r.setLoyaltyPoints(r.getLoyaltyPoints() + deduction);
+                    getUserService().updateUser(r);
+                });
+            }
             return true;
         } else {
             return false;
@@ -172,9 +221,19 @@ public class OrderService implements PaymentVisitor {
 
     @Override
     public boolean visitCreditCard(CreditCard creditCard, Cart cart) {
+        double total = 0;
         for (Map.Entry<Movie, Integer> entry : cart.getMoviesInCart().entrySet()) {
-            creditCard.charge(entry.getKey().getPrice() * entry.getValue());
-            getBillingService().updateCreditCard(creditCard);
+            total += entry.getKey().getPrice() * entry.getValue();
+        }
+        double charged = total;
+        creditCard.charge(charged);
+        getBillingService().updateCreditCard(creditCard);
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            tx.onRollback(() -> {
+                creditCard.refund(charged);
+                getBillingService().updateCreditCard(creditCard);
+            });
         }
         return true;
     }
@@ -6,6 +6,7 @@ import model.Order;
 import model.RentedMovie;
 
 import java.util.List;
+import java.util.Map;
 
 public class RentedService {
 
@@ -38,18 +39,19 @@ public class RentedService {
         return rentedRepository.countMoviesInOrder(orderNumber);
     }
 
+    public Map<String, Integer> countRentedCopies() {
+        return rentedRepository.countRentedCopies();
+    }
+
     public List<RentedMovie> getAllRentedMovies() {
         return rentedRepository.getAllRentedMovies();
     }
 
     public double getOrderTotal(int orderNumber) {
         double total = 0;
-        for (RentedMovie r : rentedRepository.getAllRentedMovies()) {
-            if (orderNumber == r.getOrderId()) {
-                String barcode = r.getBarcode();
-                Movie m = getMovieService().getMovie(barcode);
-                total += m.getPrice();
-            }
+        for (RentedMovie r : rentedRepository.getRentedMoviesInOrder(orderNumber)) {
+            Movie m = getMovieService().getMovie(r.getBarcode());
+            total += m.getPrice() * r.getQuantity();
         }
         return total;
     }
@@ -59,15 +61,15 @@ public class RentedService {
     }
 
     public void returnMovies(int orderNumber) {
-        List<RentedMovie> rentedMovies = getAllRentedMovies();
-        for (RentedMovie movie : rentedMovies) {
-            if (movie.getOrderId() == orderNumber) {
-                getMovieService().returnMovie(movie.getBarcode());
-            }
+        for (RentedMovie movie : rentedRepository.getRentedMoviesInOrder(orderNumber)) {
+            getMovieService().returnMovie(movie.getBarcode(), movie.getQuantity());
         }
         rentedRepository.deleteRentedMoviesFromOrder(orderNumber);
     }
 
+    public void deleteMovies(int orderNumber) {
+        rentedRepository.deleteRentedMoviesFromOrder(orderNumber);
+    }
 
     private MovieService getMovieService() {
         return MovieService.getInstance();
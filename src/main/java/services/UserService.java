@@ -1,6 +1,7 @@
 package services;
 
 import database.Observer;
+import database.Page;
 import database.UserRepository;
 import model.Address;
 import model.Order;
@@ -63,13 +64,7 @@ public class UserService {
                     getBillingService().saveCreditCard(c);
                 }
 
-                List<Order> orders = getOrderService().getOrdersByCustomer(oldUsername);
-                if (orders.size() > 0) {
-                    for (Order o : orders) {
-                        o.setUsername(newUsername);
-                        getOrderService().updateOrder(o.getOrderId(), o);
-                    }
-                }
+                getOrderService().changeUsername(newUsername, oldUsername);
                 return true;
             } else {
                 return false;
@@ -101,6 +96,14 @@ public class UserService {
         return userRepository.getAllCustomers();
     }
 
+    /**
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     */
+    public Page<User> getCustomers(String cursor, int limit) {
+        return userRepository.getCustomers(cursor, limit);
+    }
+
     public User getLoggedInUser() {
         return userRepository.getLoggedInUser();
     }
@@ -1,5 +1,6 @@
 package view;
 
+import database.SnapshotImage;
 import services.*;
 import view.cards.StoreFrontCards;
 
@@ -23,12 +24,21 @@ public class StoreFront extends JFrame {
 
     public StoreFront() {
         MovieService.setCsvPath(MOVIE_CSV_PATH);
+        // very large stores can run with -Dvideoco.catalog=<file> to keep the catalog off the heap
+        MovieService.setCatalogPath(System.getProperty("videoco.catalog"));
         UserService.setCsvPath(ADMIN_CSV_PATH, USER_CSV_PATH);
         AddressService.setCsvPath(ADDRESS_CSV_PATH);
         BillingService.setCsvPath(BILLING_CSV_PATH);
         RentedService.setCsvPath(RENTED_CSV_PATH);
         OrderService.setCsvPath(ORDER_CSV_PATH);
 
+        // restart from the binary images saved on the last exit, the csv files are only parsed when they changed
+        SnapshotImage.setEnabled(true);
+
+        // order history keeps loading in the background once the catalog is ready
+        Bootstrap.start();
+        Bootstrap.awaitCatalog();
+
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(windowWidth, windowHeight);
         setResizable(false);
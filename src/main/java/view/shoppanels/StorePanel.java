@@ -1,6 +1,7 @@
 package view.shoppanels;
 
 import controllers.StoreController;
+import database.FacetIndex;
 import database.MovieRepository;
 import database.UserRepository;
 
@@ -10,13 +11,16 @@ import view.tablemodels.StoreTableModel;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
 import java.util.Map;
 
 
 public class StorePanel extends JPanel {
 
+    private static final String ANY_GENRE = "Any genre";
+
     private final String[] categories = {
-            "Horror", "Mystery", "Adventure", "Action", "Thriller", "Comedy", "Sci-fi", "Drama"
+            ANY_GENRE, "Horror", "Mystery", "Adventure", "Action", "Thriller", "Comedy", "Sci-fi", "Drama"
     };
 
 
@@ -24,13 +28,23 @@ public class StorePanel extends JPanel {
 
     private JComboBox<String> categoryList;
 
+    private JComboBox<String> priceBandList;
+
+    private JCheckBox inStockOnly;
+
     private JTable table;
 
     private StoreTableModel tableModel;
 
+    private JPopupMenu suggestions;
+
+    private StoreController controller;
+
+    private boolean choosingSuggestion;
+
     public StorePanel() {
         setLayout(new BorderLayout(20, 10));
-        StoreController controller = new StoreController(this);
+        controller = new StoreController(this);
         constructNorthBarView(controller);
         constructCenterTable();
         constructSouthBarView(controller);
@@ -75,11 +89,29 @@ public class StorePanel extends JPanel {
 
         JLabel searchLabel = new JLabel("Title:");
         searchInput = new JTextField(10);
+        // suggest titles as the user types, without taking focus from the search box
+        suggestions = new JPopupMenu();
+        suggestions.setFocusable(false);
+        searchInput.getDocument().addDocumentListener(controller);
 
         JLabel searchCategoryLabel = new JLabel("Category:");
         categoryList = new JComboBox<>(categories);
+        categoryList.setActionCommand("filter");
         categoryList.addActionListener(controller);
 
+        // "Any price", then one entry per price band of FacetIndex
+        priceBandList = new JComboBox<>();
+        priceBandList.addItem("Any price");
+        for (int band = 0; band <= FacetIndex.PRICE_BANDS.length; band++) {
+            priceBandList.addItem(FacetIndex.priceBandLabel(band));
+        }
+        priceBandList.setActionCommand("filter");
+        priceBandList.addActionListener(controller);
+
+        inStockOnly = new JCheckBox("In stock");
+        inStockOnly.setActionCommand("filter");
+        inStockOnly.addActionListener(controller);
+
         JButton searchMoviesButton = new JButton("Reset");
         searchMoviesButton.setActionCommand("searchAll");
         searchMoviesButton.addActionListener(controller);
@@ -93,6 +125,8 @@ public class StorePanel extends JPanel {
         north.add(searchButton);
         north.add(searchCategoryLabel);
         north.add(categoryList);
+        north.add(priceBandList);
+        north.add(inStockOnly);
         north.add(searchMoviesButton);
 
         if (!StoreFront.getUserService().getLoggedInUser().isAdmin()) {
@@ -125,10 +159,51 @@ public class StorePanel extends JPanel {
         return searchInput;
     }
 
+    public void showSuggestions(List<String> titles) {
+        suggestions.setVisible(false);
+        suggestions.removeAll();
+        if (choosingSuggestion || titles.isEmpty() || !searchInput.isShowing()) {
+            return;
+        }
+        for (String title : titles) {
+            JMenuItem item = new JMenuItem(title);
+            item.setActionCommand("suggestion");
+            item.addActionListener(controller);
+            suggestions.add(item);
+        }
+        suggestions.show(searchInput, 0, searchInput.getHeight());
+    }
+
+    public void chooseSuggestion(String title) {
+        choosingSuggestion = true;
+        searchInput.setText(title);
+        choosingSuggestion = false;
+        suggestions.setVisible(false);
+    }
+
     public JComboBox<String> getCategoryList() {
         return categoryList;
     }
 
+    /**
+     * @return the selected genre, or null for any genre
+     */
+    public String getGenre() {
+        String genre = (String) categoryList.getSelectedItem();
+        return ANY_GENRE.equals(genre) ? null : genre;
+    }
+
+    /**
+     * @return the selected price band, or -1 for any price
+     */
+    public int getPriceBand() {
+        return priceBandList.getSelectedIndex() - 1;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly.isSelected();
+    }
+
     public JTable getTable() {
         return table;
     }
@@ -137,4 +212,8 @@ public class StorePanel extends JPanel {
         tableModel.filterTable(movies);
     }
 
+    public void showAllMovies() {
+        tableModel.showAll();
+    }
+
 }
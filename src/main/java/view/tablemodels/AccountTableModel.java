@@ -1,34 +1,23 @@
 package view.tablemodels;
 
-import database.Observer;
-import database.UserRepository;
+import database.Page;
 import model.User;
+import services.UserService;
 import view.StoreFront;
 
-import javax.swing.table.DefaultTableModel;
-import java.util.List;
+public class AccountTableModel extends LazyTableModel<User> {
 
-public class AccountTableModel extends DefaultTableModel implements Observer {
+    private final UserService userService;
 
     public AccountTableModel() {
+        super(new String[]{"USERNAME", "PASSWORD", "EMAIL"});
+        userService = StoreFront.getUserService();
         subscribe();
-        updateTable();
+        refresh();
     }
 
     private void subscribe() {
-        StoreFront.getUserService().registerObserver(this);
-    }
-
-    private void updateTable() {
-        List<User> customerAccounts = StoreFront.getUserService().getAllCustomers();
-        String[][] data = new String[customerAccounts.size()][3];
-        String[] column = {"USERNAME", "PASSWORD", "EMAIL"};
-        for (int i = 0; i < customerAccounts.size(); i++) {
-            data[i][0] = customerAccounts.get(i).getUsername();
-            data[i][1] = customerAccounts.get(i).getPassword();
-            data[i][2] = customerAccounts.get(i).getEmailAddress();
-        }
-        setDataVector(data,column);
+        userService.registerObserver(this);
     }
 
     @Override
@@ -37,7 +26,24 @@ public class AccountTableModel extends DefaultTableModel implements Observer {
     }
 
     @Override
-    public void update() {
-        updateTable();
+    protected Page<User> page(String cursor, int limit) {
+        return userService.getCustomers(cursor, limit);
+    }
+
+    @Override
+    protected String keyOf(User u) {
+        return u.getUsername();
+    }
+
+    @Override
+    protected User load(String username) {
+        User u = userService.getUser(username);
+        // an account that stopped being a customer leaves the table
+        return u != null && "customer".equals(u.getAccountType()) ? u : null;
+    }
+
+    @Override
+    protected String[] format(User u) {
+        return new String[]{u.getUsername(), u.getPassword(), u.getEmailAddress()};
     }
 }
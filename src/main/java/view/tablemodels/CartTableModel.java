@@ -1,43 +1,66 @@
 package view.tablemodels;
 
 import database.Observer;
-import database.UserRepository;
 import model.Cart;
 import model.Movie;
 import view.StoreFront;
 
-import javax.swing.table.DefaultTableModel;
-import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
 
-public class CartTableModel extends DefaultTableModel implements Observer {
+public class CartTableModel extends AbstractTableModel implements Observer {
+
+    private static final String[] COLUMNS = {"BARCODE", "TITLE", "PRICE", "QUANTITY"};
+
+    private final Cart cart;
+
+    private List<Movie> movies;
 
     public CartTableModel() {
+        cart = StoreFront.getUserService().getLoggedInUser().getCart();
+        movies = new ArrayList<>();
         subscribe();
         updateTable();
     }
 
     private void updateTable() {
-        Cart userCart = StoreFront.getUserService().getLoggedInUser().getCart();
-        String[][] data = new String[userCart.getMoviesInCart().size()][4];
-        String[] column = {"BARCODE", "TITLE", "PRICE", "QUANTITY"};
-        int i = 0;
-        for (Map.Entry<Movie, Integer> entry : userCart.getMoviesInCart().entrySet()) {
-            data[i][0] = entry.getKey().getBarcode();
-            data[i][1] = entry.getKey().getTitle();
-            data[i][2] = String.valueOf(entry.getKey().getPrice());
-            data[i][3] = String.valueOf(entry.getValue());
-            i++;
-        }
-        setDataVector(data,column);
+        movies = new ArrayList<>(cart.getMoviesInCart().keySet());
+        fireTableDataChanged();
     }
 
     private void subscribe() {
-        StoreFront.getUserService().getLoggedInUser().getCart().registerObserver(this);
+        cart.registerObserver(this);
+    }
+
+    @Override
+    public int getRowCount() {
+        return movies.size();
     }
 
     @Override
-    public boolean isCellEditable(int row, int column) {
-        return false;
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Movie m = movies.get(row);
+        switch (column) {
+            case 0:
+                return m.getBarcode();
+            case 1:
+                return m.getTitle();
+            case 2:
+                return String.valueOf(m.getPrice());
+            default:
+                return String.valueOf(cart.getQuantity(m));
+        }
     }
 
     @Override
@@ -0,0 +1,202 @@
+package view.tablemodels;
+
+import database.Observer;
+import database.Page;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table over a paged listing that fetches rows a page at a time as the table scrolls down to them.
+ * Only the keys of fetched rows are kept, cells are formatted when a row is first painted and just the most
+ * recently painted rows stay formatted. A change to a single row repaints that row if it has been fetched and
+ * is ignored if it hasn't, a new row is appended once every page is fetched, anything else reloads from the
+ * first page.
+ * @param <T> the row type
+ */
+public abstract class LazyTableModel<T> extends AbstractTableModel implements Observer {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int CACHED_ROWS = 500;
+
+    private final String[] columns;
+
+    private final List<String> keys;
+
+    private final Map<String, Integer> rowByKey;
+
+    private final Map<Integer, String[]> cache;
+
+    // rows with cells edited in the table, kept until the row is reloaded
+    private final Map<Integer, String[]> edited;
+
+    private String cursor;
+
+    private boolean more;
+
+    private int total;
+
+    protected LazyTableModel(String[] columns) {
+        this.columns = columns;
+        keys = new ArrayList<>();
+        rowByKey = new HashMap<>();
+        cache = new LinkedHashMap<Integer, String[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+                return size() > CACHED_ROWS;
+            }
+        };
+        edited = new HashMap<>();
+    }
+
+    /**
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size
+     */
+    protected abstract Page<T> page(String cursor, int limit);
+
+    protected abstract String keyOf(T row);
+
+    /**
+     * @return the row as it is now, or null if it is gone
+     */
+    protected abstract T load(String key);
+
+    protected abstract String[] format(T row);
+
+    /**
+     * @return false if the row isn't part of what the table lists, such as another customer's order
+     */
+    protected boolean belongs(T row) {
+        return true;
+    }
+
+    /**
+     * Drop every fetched row and start again from the first page
+     */
+    public void refresh() {
+        keys.clear();
+        rowByKey.clear();
+        cache.clear();
+        edited.clear();
+        cursor = null;
+        more = true;
+        total = fetch();
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return total;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return cells(row)[column];
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        String[] cells = cells(row);
+        cells[column] = value == null ? null : value.toString();
+        edited.put(row, cells);
+        fireTableCellUpdated(row, column);
+    }
+
+    @Override
+    public void update() {
+        SwingUtilities.invokeLater(this::refresh);
+    }
+
+    @Override
+    public void update(String key) {
+        SwingUtilities.invokeLater(() -> {
+            Integer row = rowByKey.get(key);
+            if (row == null) {
+                if (!more) {
+                    append(key);
+                }
+                // otherwise the row hasn't been fetched yet and is formatted when it is
+                return;
+            }
+            T current = row >= total ? null : load(key);
+            if (current == null) {
+                refresh();
+                return;
+            }
+            edited.remove(row);
+            cache.put(row, format(current));
+            fireTableRowsUpdated(row, row);
+        });
+    }
+
+    private void append(String key) {
+        T added = load(key);
+        if (added == null || !belongs(added)) {
+            return;
+        }
+        int row = keys.size();
+        rowByKey.put(key, row);
+        keys.add(key);
+        cache.put(row, format(added));
+        total = keys.size();
+        fireTableRowsInserted(row, row);
+    }
+
+    private String[] cells(int row) {
+        String[] cells = edited.get(row);
+        if (cells == null) {
+            cells = cache.get(row);
+        }
+        if (cells == null) {
+            while (keys.size() <= row && more) {
+                fetch();
+            }
+            cells = cache.get(row);
+        }
+        if (cells == null) {
+            T current = row < keys.size() ? load(keys.get(row)) : null;
+            if (current == null) {
+                cells = new String[columns.length];
+                Arrays.fill(cells, "");
+            } else {
+                cells = format(current);
+            }
+            cache.put(row, cells);
+        }
+        return cells;
+    }
+
+    /**
+     * Fetch the next page and format its rows, they are about to be painted
+     * @return the total the page reported
+     */
+    private int fetch() {
+        Page<T> page = page(cursor, PAGE_SIZE);
+        for (T row : page.getItems()) {
+            rowByKey.put(keyOf(row), keys.size());
+            cache.put(keys.size(), format(row));
+            keys.add(keyOf(row));
+        }
+        cursor = page.getNextCursor();
+        more = page.hasNext();
+        return page.getTotal();
+    }
+}
@@ -1,17 +1,15 @@
 package view.tablemodels;
 
-import database.Observer;
+import database.Page;
 import model.Order;
+import model.User;
 import services.OrderService;
 import services.UserService;
 import view.StoreFront;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableColumn;
-import java.util.List;
 
-public class OrderTableModel extends DefaultTableModel implements Observer {
+public class OrderTableModel extends LazyTableModel<Order> {
 
     private final JTable view;
     private final JComboBox<String> orderStatus;
@@ -19,12 +17,13 @@ public class OrderTableModel extends DefaultTableModel implements Observer {
     private final UserService userService;
 
     public OrderTableModel(JTable table, JComboBox<String> orderStatus) {
+        super(new String[]{"NUMBER","STATUS","DATE","DUEDATE","OVERDUE"});
         view = table;
         orderService = StoreFront.getOrderService();
         userService = StoreFront.getUserService();
         this.orderStatus = orderStatus;
         subscribe();
-        updateTable();
+        refresh();
     }
 
     private void subscribe() {
@@ -36,29 +35,33 @@ public class OrderTableModel extends DefaultTableModel implements Observer {
         return column == 1 && userService.getLoggedInUser().isAdmin();
     }
 
-    private void updateTable() {
-        List<Order> orders;
+    @Override
+    protected Page<Order> page(String cursor, int limit) {
         if (userService.getLoggedInUser().isAdmin()) {
-            orders = orderService.getAllOrders();
-        } else {
-            orders = orderService.getOrdersByCustomer(userService.getLoggedInUser().getUsername());
-        }
-        String[][] data = new String[orders.size()][5];
-        String[] column = {"NUMBER","STATUS","DATE","DUEDATE","OVERDUE"};
-        int i = 0;
-        for (Order o : orders) {
-            data[i][0] = String.valueOf(o.getOrderId());
-            data[i][1] = o.getOrderStatus();
-            data[i][2] = o.getOrderDate();
-            data[i][3] = o.getDueDate();
-            data[i][4] = String.valueOf(o.getOverdue());
-            i++;
+            return orderService.getOrders(cursor, limit);
         }
-        setDataVector(data,column);
+        return orderService.getOrdersByCustomer(userService.getLoggedInUser().getUsername(), cursor, limit);
+    }
+
+    @Override
+    protected boolean belongs(Order o) {
+        User u = userService.getLoggedInUser();
+        return u.isAdmin() || u.getUsername().equals(o.getUsername());
+    }
+
+    @Override
+    protected String keyOf(Order o) {
+        return String.valueOf(o.getOrderId());
+    }
+
+    @Override
+    protected Order load(String orderNumber) {
+        return orderService.getOrder(Integer.parseInt(orderNumber));
     }
 
     @Override
-    public void update() {
-        updateTable();
+    protected String[] format(Order o) {
+        return new String[]{String.valueOf(o.getOrderId()), String.valueOf(o.getOrderStatus()), o.getOrderDate(),
+                o.getDueDate(), String.valueOf(o.getOverdue())};
     }
 }
@@ -1,68 +1,77 @@
 package view.tablemodels;
 
-import database.Observer;
+import database.Page;
 import model.Movie;
+import services.MovieService;
 import view.StoreFront;
 
-import javax.swing.table.DefaultTableModel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
-public class StoreTableModel extends DefaultTableModel implements Observer {
+public class StoreTableModel extends LazyTableModel<Movie> {
+
+    private final MovieService movieService;
+
+    // the movies of the last search, or null to show the whole catalog
+    private List<Movie> results;
 
     public StoreTableModel() {
+        super(new String[]{"BARCODE", "TITLE", "GENRE", "RELEASE", "PRICE", "STOCK"});
+        movieService = StoreFront.getMovieService();
         subscribe();
-        updateTable();
+        refresh();
     }
 
     private void subscribe() {
-        StoreFront.getMovieService().registerObserver(this);
+        movieService.registerObserver(this);
     }
 
     public void filterTable(Map<Movie,Integer> movies) {
-        String[][] data = new String[movies.size()][6];
-        String[] column = {"BARCODE", "TITLE", "GENRE", "RELEASE", "PRICE", "STOCK"};
+        results = new ArrayList<>(movies.keySet());
+        refresh();
+    }
 
-        int i = 0;
-        for (Map.Entry<Movie,Integer> entry : movies.entrySet()) {
-            Movie m = entry.getKey();
-            data[i][0] = m.getBarcode();
-            data[i][1] = m.getTitle();
-            data[i][2] = m.getGenre();
-            data[i][3] = m.getReleaseDate();
-            data[i][4] = String.valueOf(m.getPrice());
-            data[i][5] = String.valueOf(entry.getValue());
-            i++;
+    public void showAll() {
+        results = null;
+        refresh();
+    }
+
+    @Override
+    protected Page<Movie> page(String cursor, int limit) {
+        if (results == null) {
+            return movieService.getMovies(cursor, limit);
         }
+        int from = cursor == null ? 0 : Integer.parseInt(cursor);
+        int to = Math.min(results.size(), from + limit);
+        return new Page<>(results.subList(from, to), to < results.size() ? String.valueOf(to) : null, results.size());
+    }
 
-        setDataVector(data, column);
+    @Override
+    protected boolean belongs(Movie m) {
+        return results == null || results.contains(m);
     }
 
-    private void updateTable() {
-        Map<Movie,Integer> movies = StoreFront.getMovieService().getAllMovies();
-        String[][] data = new String[movies.size()][6];
-        String[] column = {"BARCODE", "TITLE", "GENRE", "RELEASE", "PRICE", "STOCK"};
+    @Override
+    protected String keyOf(Movie m) {
+        return m.getBarcode();
+    }
 
-        int i = 0;
-        for (Map.Entry<Movie,Integer> entry : movies.entrySet()) {
-            Movie m = entry.getKey();
-            data[i][0] = m.getBarcode();
-            data[i][1] = m.getTitle();
-            data[i][2] = m.getGenre();
-            data[i][3] = m.getReleaseDate();
-            data[i][4] = String.valueOf(m.getPrice());
-            data[i][5] = String.valueOf(entry.getValue());
-            i++;
-        }
-        setDataVector(data, column);
+    @Override
+    protected Movie load(String barcode) {
+        return movieService.getMovie(barcode);
     }
 
     @Override
-    public boolean isCellEditable(int row, int column) {
-        return false;
+    protected String[] format(Movie m) {
+        return new String[]{m.getBarcode(), m.getTitle(), m.getGenre(), m.getReleaseDate(),
+                String.valueOf(m.getPrice()), String.valueOf(movieService.getStockForMovie(m.getBarcode()))};
     }
 
     @Override
     public void update() {
-        updateTable();
+        // a movie was added or deleted, go back to the whole catalog as before
+        results = null;
+        super.update();
     }
 }
@@ -0,0 +1,57 @@
+package database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class CompletionIndexTest {
+
+    private CompletionIndex underTest;
+
+    @BeforeEach
+    void setup() {
+        underTest = new CompletionIndex();
+        underTest.add(movie("1", "Deadpool", "Comedy", "01/01/11", 9.99));
+        underTest.add(movie("2", "Deadpool 2", "Comedy", "01/01/11", 9.99));
+        underTest.add(movie("3", "Dead Poets Society", "Comedy", "01/01/11", 9.99));
+        underTest.add(movie("4", "Love Actually", "Comedy", "01/01/11", 9.99));
+    }
+
+    @Test
+    void testCompletesWordsAndTitles() {
+        assertThat(underTest.complete("dead", 10).size()).isEqualTo(3);
+        assertThat(underTest.complete("POE", 10).toString()).isEqualTo("[3]");
+        assertThat(underTest.complete("dead po", 10).toString()).isEqualTo("[3]");
+        assertThat(underTest.complete("act", 10).toString()).isEqualTo("[4]");
+        assertThat(underTest.complete("x", 10).isEmpty()).isTrue();
+        assertThat(underTest.complete(" ", 10).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testMostRentedFirst() {
+        Map<String, Integer> rentals = new HashMap<>();
+        rentals.put("2", 5);
+        rentals.put("3", 1);
+        underTest.setPopularity(rentals);
+
+        assertThat(underTest.complete("d", 10).toString()).isEqualTo("[2, 3, 1]");
+
+        underTest.addPopularity("1", 6);
+
+        assertThat(underTest.complete("d", 2).toString()).isEqualTo("[1, 2]");
+    }
+
+    @Test
+    void testRemove() {
+        underTest.remove(movie("1", "Deadpool", "Comedy", "01/01/11", 9.99));
+
+        List<String> result = underTest.complete("deadpool", 10);
+        assertThat(result.toString()).isEqualTo("[2]");
+    }
+}
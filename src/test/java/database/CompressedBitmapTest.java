@@ -0,0 +1,110 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class CompressedBitmapTest {
+
+    @Test
+    void testAddRemoveContains() {
+        CompressedBitmap underTest = new CompressedBitmap();
+        assertThat(underTest.add(3)).isTrue();
+        assertThat(underTest.add(3)).isFalse();
+        underTest.add(70000);
+
+        assertThat(underTest.contains(3)).isTrue();
+        assertThat(underTest.contains(70000)).isTrue();
+        assertThat(underTest.contains(4)).isFalse();
+        assertThat(underTest.cardinality()).isEqualTo(2);
+
+        assertThat(underTest.remove(3)).isTrue();
+        assertThat(underTest.remove(3)).isFalse();
+        assertThat(underTest.contains(3)).isFalse();
+        underTest.remove(70000);
+        assertThat(underTest.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testDenseContainer() {
+        CompressedBitmap underTest = new CompressedBitmap();
+        for (int i = 0; i < 10000; i++) {
+            underTest.add(i * 2);
+        }
+        assertThat(underTest.cardinality()).isEqualTo(10000);
+        assertThat(underTest.contains(19998)).isTrue();
+        assertThat(underTest.contains(19999)).isFalse();
+
+        for (int i = 0; i < 9000; i++) {
+            underTest.remove(i * 2);
+        }
+        assertThat(underTest.cardinality()).isEqualTo(1000);
+        assertThat(underTest.contains(18000)).isTrue();
+        assertThat(underTest.contains(17998)).isFalse();
+    }
+
+    @Test
+    void testAddRemoveAroundDenseThreshold() {
+        CompressedBitmap underTest = new CompressedBitmap();
+        for (int i = 0; i <= 4096; i++) {
+            underTest.add(i);
+        }
+        for (int round = 0; round < 3; round++) {
+            underTest.remove(4096);
+            underTest.remove(4095);
+            underTest.add(4095);
+            underTest.add(4096);
+        }
+        assertThat(underTest.cardinality()).isEqualTo(4097);
+
+        for (int i = 0; i < 3000; i++) {
+            underTest.remove(i);
+        }
+        underTest.add(10);
+        assertThat(underTest.cardinality()).isEqualTo(1098);
+        assertThat(underTest.contains(10)).isTrue();
+        assertThat(underTest.contains(11)).isFalse();
+        assertThat(underTest.contains(4096)).isTrue();
+    }
+
+    @Test
+    void testAndOr() {
+        CompressedBitmap evens = new CompressedBitmap();
+        CompressedBitmap threes = new CompressedBitmap();
+        for (int i = 0; i < 200000; i++) {
+            if (i % 2 == 0) {
+                evens.add(i);
+            }
+            if (i % 3 == 0) {
+                threes.add(i);
+            }
+        }
+
+        CompressedBitmap sixes = evens.and(threes);
+        assertThat(sixes.cardinality()).isEqualTo(33334);
+        assertThat(sixes.contains(6)).isTrue();
+        assertThat(sixes.contains(4)).isFalse();
+
+        CompressedBitmap either = evens.or(threes);
+        assertThat(either.cardinality()).isEqualTo(100000 + 66667 - 33334);
+        assertThat(either.contains(9)).isTrue();
+        assertThat(either.contains(7)).isFalse();
+        // the operands are left alone
+        assertThat(evens.cardinality()).isEqualTo(100000);
+    }
+
+    @Test
+    void testForEachInOrder() {
+        CompressedBitmap underTest = new CompressedBitmap();
+        underTest.add(131072);
+        underTest.add(5);
+        underTest.add(65536);
+        List<Integer> values = new ArrayList<>();
+        underTest.forEach(values::add);
+
+        assertThat(values.toString()).isEqualTo("[5, 65536, 131072]");
+    }
+}
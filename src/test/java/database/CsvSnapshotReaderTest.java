@@ -0,0 +1,111 @@
+package database;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class CsvSnapshotReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String writeCsv(Object[]... rows) throws IOException {
+        String path = tempDir.resolve("table.csv").toString();
+        try (CSVPrinter printer = new CSVPrinter(new FileWriter(path, false),
+                CSVFormat.RFC4180.withHeader("text", "int", "double", "bool"))) {
+            for (Object[] row : rows) {
+                printer.printRecord(row);
+            }
+        }
+        return path;
+    }
+
+    @Test
+    void testReadTypedFields() throws IOException {
+        CsvSnapshotReader underTest = new CsvSnapshotReader(writeCsv(
+                new Object[]{"Deadpool", 28, 10.87, true},
+                new Object[]{"Boyhood", -3, 8.0, false}));
+
+        assertThat(underTest.nextRow()).isTrue();
+        underTest.skipField();
+        underTest.skipField();
+        underTest.skipField();
+        underTest.skipField();
+
+        assertThat(underTest.nextRow()).isTrue();
+        assertThat(underTest.readString()).isEqualTo("Deadpool");
+        assertThat(underTest.readInt()).isEqualTo(28);
+        assertThat(underTest.readDouble()).isEqualTo(10.87);
+        assertThat(underTest.readBoolean()).isTrue();
+
+        assertThat(underTest.nextRow()).isTrue();
+        assertThat(underTest.readString()).isEqualTo("Boyhood");
+        assertThat(underTest.readInt()).isEqualTo(-3);
+        assertThat(underTest.readDouble()).isEqualTo(8.0);
+        assertThat(underTest.readBoolean()).isFalse();
+
+        assertThat(underTest.nextRow()).isFalse();
+    }
+
+    @Test
+    void testReadQuotedFields() throws IOException {
+        CsvSnapshotReader underTest = new CsvSnapshotReader(writeCsv(
+                new Object[]{"Crazy, Stupid, \"Love\"", 1, 1.0E10, "TRUE"}));
+
+        underTest.nextRow();
+        assertThat(underTest.nextRow()).isTrue();
+        assertThat(underTest.readString()).isEqualTo("Crazy, Stupid, \"Love\"");
+        assertThat(underTest.readInt()).isEqualTo(1);
+        assertThat(underTest.readDouble()).isEqualTo(1.0E10);
+        assertThat(underTest.readBoolean()).isTrue();
+        assertThat(underTest.nextRow()).isFalse();
+    }
+
+    @Test
+    void testSkipRestOfRow() throws IOException {
+        CsvSnapshotReader underTest = new CsvSnapshotReader(writeCsv(
+                new Object[]{"a", 1, 1.5, true},
+                new Object[]{"b", 2, 2.5, false}));
+
+        underTest.nextRow();
+        underTest.nextRow();
+        assertThat(underTest.readString()).isEqualTo("a");
+        underTest.nextRow();
+        assertThat(underTest.readString()).isEqualTo("b");
+    }
+
+    @Test
+    void testHasField() throws IOException {
+        CsvSnapshotReader underTest = new CsvSnapshotReader(writeCsv(
+                new Object[]{"a", 1},
+                new Object[]{"b", 2, 2.5, false}));
+
+        underTest.nextRow();
+        underTest.nextRow();
+        underTest.readString();
+        assertThat(underTest.hasField()).isTrue();
+        underTest.readInt();
+        assertThat(underTest.hasField()).isFalse();
+        underTest.nextRow();
+        underTest.skipField();
+        underTest.skipField();
+        assertThat(underTest.hasField()).isTrue();
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        String path = tempDir.resolve("empty.csv").toString();
+        new FileWriter(path, false).close();
+
+        CsvSnapshotReader underTest = new CsvSnapshotReader(path);
+
+        assertThat(underTest.nextRow()).isFalse();
+    }
+}
@@ -0,0 +1,86 @@
+package database;
+
+import model.MovieFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class FacetIndexTest {
+
+    private final Map<String, Integer> stock = new HashMap<>();
+
+    private FacetIndex index() {
+        FacetIndex underTest = new FacetIndex(barcode -> stock.getOrDefault(barcode, 0));
+        stock.put("1", 2);
+        stock.put("2", 0);
+        stock.put("3", 1);
+        underTest.add(movie("1", "Title 1", "Comedy", "01/01/11", 4.99));
+        underTest.add(movie("2", "Title 2", "Comedy", "01/01/12", 9.99));
+        underTest.add(movie("3", "Title 3", "Drama", "01/01/11", 12.99));
+        return underTest;
+    }
+
+    @Test
+    void testFacetsAreAndedValuesAreOred() {
+        FacetIndex underTest = index();
+
+        assertThat(underTest.filter(new MovieFilter()).size()).isEqualTo(3);
+        assertThat(underTest.filter(new MovieFilter().addGenre("comedy")).toString()).isEqualTo("[1, 2]");
+        assertThat(underTest.filter(new MovieFilter().addGenre("Comedy").addGenre("Drama")).size()).isEqualTo(3);
+        assertThat(underTest.filter(new MovieFilter().addGenre("Comedy").addReleaseYear(2011)).toString())
+                .isEqualTo("[1]");
+        assertThat(underTest.filter(new MovieFilter().addPriceBand(FacetIndex.priceBand(12.99))).toString())
+                .isEqualTo("[3]");
+        assertThat(underTest.filter(new MovieFilter().addGenre("Kids")).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testInStock() {
+        FacetIndex underTest = index();
+        MovieFilter inStock = new MovieFilter().setInStockOnly(true);
+        assertThat(underTest.filter(inStock).toString()).isEqualTo("[1, 3]");
+
+        stock.put("1", 0);
+        stock.put("2", 1);
+        underTest.refreshStock(Arrays.asList("1", "2"));
+
+        assertThat(underTest.filter(inStock).toString()).isEqualTo("[2, 3]");
+    }
+
+    @Test
+    void testCount() {
+        FacetIndex underTest = index();
+        FacetCounts counts = underTest.count(new MovieFilter().addGenre("Comedy"));
+
+        assertThat(counts.getMatches()).isEqualTo(2);
+        assertThat(counts.getInStock()).isEqualTo(1);
+        // the genre counts ignore the genre selected
+        assertThat(counts.getGenres().get("drama")).isEqualTo(1);
+        assertThat(counts.getReleaseYears().get(2011)).isEqualTo(1);
+        assertThat(counts.getReleaseYears().get(2012)).isEqualTo(1);
+    }
+
+    @Test
+    void testRemoveAndUpdate() {
+        FacetIndex underTest = index();
+        underTest.remove(movie("1", "Title 1", "Comedy", "01/01/11", 4.99));
+        underTest.remove(movie("3", "Title 3", "Drama", "01/01/11", 12.99));
+        underTest.add(movie("3", "Title 3", "Comedy", "01/01/11", 12.99));
+
+        assertThat(underTest.filter(new MovieFilter().addGenre("Comedy")).toString()).isEqualTo("[2, 3]");
+        assertThat(underTest.filter(new MovieFilter().addGenre("Drama")).isEmpty()).isTrue();
+        assertThat(underTest.filter(new MovieFilter().setInStockOnly(true)).toString()).isEqualTo("[3]");
+    }
+
+    @Test
+    void testPriceBandLabels() {
+        assertThat(FacetIndex.priceBandLabel(0)).isEqualTo("Under $5");
+        assertThat(FacetIndex.priceBandLabel(FacetIndex.priceBand(12.99))).isEqualTo("$10 - $15");
+        assertThat(FacetIndex.priceBandLabel(FacetIndex.PRICE_BANDS.length)).isEqualTo("$20 and up");
+    }
+}
@@ -0,0 +1,30 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class GenreIndexTest {
+
+    @Test
+    void testGenresIgnoreCase() {
+        GenreIndex underTest = new GenreIndex();
+        underTest.add(movie("1", "Title 1", "Comedy", "01/01/11", 9.99));
+        underTest.add(movie("2", "Title 2", "comedy", "01/01/11", 9.99));
+        underTest.add(movie("3", "Title 3", "Drama", "01/01/11", 9.99));
+
+        assertThat(underTest.barcodes("COMEDY").size()).isEqualTo(2);
+        assertThat(underTest.barcodes("drama").contains("3")).isTrue();
+        assertThat(underTest.barcodes("Kids").isEmpty()).isTrue();
+    }
+
+    @Test
+    void testRemove() {
+        GenreIndex underTest = new GenreIndex();
+        underTest.add(movie("1", "Title 1", "Comedy", "01/01/11", 9.99));
+        underTest.remove(movie("1", "Title 1", "Comedy", "01/01/11", 9.99));
+
+        assertThat(underTest.barcodes("Comedy").isEmpty()).isTrue();
+    }
+}
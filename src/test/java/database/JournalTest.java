@@ -0,0 +1,153 @@
+package database;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class JournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Journal underTest;
+
+    @BeforeEach
+    void setup() {
+        underTest = new Journal(tempDir.resolve("movies.csv").toString());
+    }
+
+    @Test
+    void testReplayInOrder() {
+        underTest.log("PUT", "1", "Test", "Kids", "01/01/01", 2, 9.99);
+        underTest.flush();
+        underTest.log("STOCK", "1", 1);
+        underTest.log("DELETE", "1");
+        underTest.flush();
+
+        List<String> ops = new ArrayList<>();
+        underTest.replay(r -> ops.add(r.get(0)));
+
+        assertThat(ops.toString()).isEqualTo("[PUT, STOCK, DELETE]");
+        assertThat(underTest.size()).isEqualTo(3);
+    }
+
+    @Test
+    void testReplayQuotedFields() {
+        underTest.log("PUT", "1", "Crazy, Stupid, Love", "Comedy", "01/01/11", 2, 9.99);
+        underTest.flush();
+
+        List<CSVRecord> records = new ArrayList<>();
+        underTest.replay(records::add);
+
+        assertThat(records.get(0).get(2)).isEqualTo("Crazy, Stupid, Love");
+    }
+
+    @Test
+    void testTornTailIsCutOff() throws IOException {
+        underTest.log("PUT", "1", "Test", "Kids", "01/01/01", 2, 9.99);
+        underTest.flush();
+        Path journal = tempDir.resolve("movies.csv.journal");
+        long complete = Files.size(journal);
+        // a crash part way through appending a record with a quoted title
+        Files.write(journal, "PUT,2,\"Crazy, Stu".getBytes(), StandardOpenOption.APPEND);
+
+        List<String> barcodes = new ArrayList<>();
+        underTest.replay(r -> barcodes.add(r.get(1)));
+        assertThat(barcodes.toString()).isEqualTo("[1]");
+        assertThat(Files.size(journal)).isEqualTo(complete);
+
+        underTest.log("DELETE", "1");
+        underTest.flush();
+        List<String> ops = new ArrayList<>();
+        underTest.replay(r -> ops.add(r.get(0)));
+
+        assertThat(ops.toString()).isEqualTo("[PUT, DELETE]");
+    }
+
+    @Test
+    void testTransactionReplaysOnlyOnceCommitted() throws IOException {
+        try (Transaction tx = Transaction.begin()) {
+            underTest.log("PUT", "1", "Test", "Kids", "01/01/01", 2, 9.99);
+            underTest.log("STOCK", "1", 1);
+            assertThat(underTest.size()).isEqualTo(0);
+            tx.commit();
+        }
+        try (Transaction tx = Transaction.begin()) {
+            underTest.log("DELETE", "1");
+            tx.rollback();
+        }
+        underTest.flush();
+        Path journal = tempDir.resolve("movies.csv.journal");
+        long committed = Files.size(journal);
+        // a crash after part of a group was written
+        Files.write(journal, "BEGIN\r\nDELETE,1\r\n".getBytes(), StandardOpenOption.APPEND);
+
+        List<String> ops = new ArrayList<>();
+        underTest.replay(r -> ops.add(r.get(0)));
+
+        assertThat(ops.toString()).isEqualTo("[PUT, STOCK]");
+        assertThat(Files.size(journal)).isEqualTo(committed);
+    }
+
+    @Test
+    void testBufferedUntilFlush() {
+        underTest.log("DELETE", "1");
+
+        List<CSVRecord> records = new ArrayList<>();
+        underTest.replay(records::add);
+
+        assertThat(records.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testTruncate() {
+        underTest.log("DELETE", "1");
+        underTest.flush();
+        underTest.log("DELETE", "2");
+        underTest.truncate();
+        underTest.flush();
+
+        List<CSVRecord> records = new ArrayList<>();
+        underTest.replay(records::add);
+
+        assertThat(records.isEmpty()).isTrue();
+        assertThat(underTest.size()).isEqualTo(0);
+    }
+
+    @Test
+    void testCheckpoint() throws IOException {
+        Path snapshot = tempDir.resolve("movies.csv");
+        underTest.log("DELETE", "1");
+        underTest.flush();
+
+        underTest.checkpoint(CSVFormat.RFC4180.withHeader("barcode", "title"), printer -> printer.printRecord("1", "Test"));
+
+        List<String> lines = Files.readAllLines(snapshot);
+        assertThat(lines.size()).isEqualTo(2);
+        assertThat(lines.get(1)).isEqualTo("1,Test");
+        assertThat(Files.exists(tempDir.resolve("movies.csv.tmp"))).isFalse();
+        assertThat(underTest.size()).isEqualTo(0);
+    }
+
+    @Test
+    void testCheckpointWritesUtf8() throws IOException {
+        Path snapshot = tempDir.resolve("movies.csv");
+
+        underTest.checkpoint(CSVFormat.RFC4180.withHeader("barcode", "title"),
+                printer -> printer.printRecord("1", "Am\u00e9lie"));
+
+        assertThat(Files.readAllLines(snapshot, StandardCharsets.UTF_8).get(1)).isEqualTo("1,Am\u00e9lie");
+    }
+}
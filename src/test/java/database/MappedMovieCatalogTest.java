@@ -0,0 +1,94 @@
+package database;
+
+import model.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class MappedMovieCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MappedMovieCatalog underTest;
+
+    @BeforeEach
+    void setup() throws IOException {
+        underTest = new MappedMovieCatalog(tempDir.resolve("catalog.dat").toString());
+    }
+
+    @Test
+    void testPutAndGet() {
+        underTest.put(movie("1", "Crazy, Stupid, Love", "Comedy", "01/01/11", 9.99));
+
+        Movie m = underTest.get("1");
+        assertThat(m).isEqualTo(movie("1", "Crazy, Stupid, Love", "Comedy", "01/01/11", 9.99));
+        assertThat(m.getGenre()).isEqualTo("Comedy");
+        assertThat(m.getPrice()).isEqualTo(9.99);
+        assertThat(underTest.get("2")).isNull();
+    }
+
+    @Test
+    void testReplace() {
+        underTest.put(movie("1", "Old", "Comedy", "01/01/11", 9.99));
+        underTest.put(movie("1", "New", "Comedy", "01/01/11", 9.99));
+
+        assertThat(underTest.size()).isEqualTo(1);
+        assertThat(underTest.get("1").getTitle()).isEqualTo("New");
+    }
+
+    @Test
+    void testGrowAndRemove() {
+        for (int i = 0; i < 5000; i++) {
+            underTest.put(movie("BC" + i, "Movie " + i, "Comedy", "01/01/11", 9.99));
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            underTest.remove("BC" + i);
+        }
+
+        assertThat(underTest.size()).isEqualTo(2500);
+        for (int i = 0; i < 5000; i++) {
+            assertThat(underTest.contains("BC" + i)).isEqualTo(i % 2 == 1);
+        }
+        assertThat(underTest.get("BC4999").getTitle()).isEqualTo("Movie 4999");
+
+        Set<Movie> all = new HashSet<>();
+        for (Movie m : underTest.movies()) {
+            all.add(m);
+        }
+        assertThat(all.size()).isEqualTo(2500);
+        assertThat(all.contains(movie("BC7", "Movie 7", "Comedy", "01/01/11", 9.99))).isTrue();
+    }
+
+    @Test
+    void testFreedRecordsAreReused() {
+        underTest.put(movie("1", "One", "Comedy", "01/01/11", 9.99));
+        underTest.remove("1");
+        underTest.put(movie("2", "Two", "Comedy", "01/01/11", 9.99));
+
+        assertThat(underTest.size()).isEqualTo(1);
+        assertThat(underTest.get("2").getTitle()).isEqualTo("Two");
+        assertThat(underTest.movies().iterator().next().getBarcode()).isEqualTo("2");
+    }
+
+    @Test
+    void testRejectsOversizedFields() {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            title.append('a');
+        }
+        Movie m = movie("1", title.toString(), "Comedy", "01/01/11", 9.99);
+
+        assertThat(underTest.fits(m)).isFalse();
+        assertThat(underTest.put(m)).isFalse();
+        assertThat(underTest.size()).isEqualTo(0);
+    }
+}
@@ -1,14 +1,23 @@
 package database;
 
 import model.Movie;
+import model.MovieFilter;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 
 class MovieRepositoryTest {
 
@@ -66,6 +75,30 @@ class MovieRepositoryTest {
         underTest.deleteMovie("222");
     }
 
+    @Test
+    void testAddMovieWithUsedBarcode() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("223");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Kids");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+        underTest.addMovie(newMovie,1);
+
+        Movie other = new Movie();
+        other.setBarcode("223");
+        other.setTitle("Other");
+        other.setGenre("Drama");
+        other.setReleaseDate("02/02/02");
+        other.setPrice(4.99);
+
+        assertThat(underTest.addMovie(other, 5)).isFalse();
+        assertThat(underTest.getMovie("223")).isEqualTo(newMovie);
+        assertThat(underTest.getStockForMovie("223")).isEqualTo(1);
+
+        underTest.deleteMovie("223");
+    }
+
     @Test
     void testDeleteMovies() {
         Movie newMovie2 = new Movie();
@@ -175,6 +208,189 @@ class MovieRepositoryTest {
         underTest.deleteMovie("99");
     }
 
+    @Test
+    void testUpdateMovieChangesCategory() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("98");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Drama");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+        underTest.addMovie(newMovie,1);
+
+        Movie updatedMovie = new Movie();
+        updatedMovie.setBarcode("98");
+        updatedMovie.setTitle("Test");
+        updatedMovie.setGenre("Horror");
+        updatedMovie.setReleaseDate("01/01/01");
+        updatedMovie.setPrice(9.99);
+        underTest.updateMovie(updatedMovie);
+
+        assertThat(underTest.getMoviesByCategory("drama").containsKey(updatedMovie)).isFalse();
+        assertThat(underTest.getMoviesByCategory("HORROR").get(updatedMovie)).isEqualTo(1);
+
+        underTest.deleteMovie("98");
+        assertThat(underTest.getMoviesByCategory("Horror").containsKey(updatedMovie)).isFalse();
+    }
+
+    @Test
+    void testFilterMoviesFollowsStock() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("96");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Drama");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+        underTest.addMovie(newMovie,1);
+        MovieFilter filter = new MovieFilter().addGenre("drama").setInStockOnly(true);
+
+        assertThat(underTest.filterMovies(filter).get(newMovie)).isEqualTo(1);
+
+        Map<Movie,Integer> cart = new HashMap<>();
+        cart.put(newMovie, 1);
+        underTest.rentMovies(cart);
+        assertThat(underTest.filterMovies(filter).containsKey(newMovie)).isFalse();
+        assertThat(underTest.filterMovies(new MovieFilter().addGenre("drama")).containsKey(newMovie)).isTrue();
+
+        underTest.returnMovie("96");
+        assertThat(underTest.filterMovies(filter).containsKey(newMovie)).isTrue();
+
+        underTest.deleteMovie("96");
+        assertThat(underTest.filterMovies(new MovieFilter().addGenre("drama")).containsKey(newMovie)).isFalse();
+    }
+
+    @Test
+    void testGetMoviesByPriceAndRelease() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("95");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Drama");
+        newMovie.setReleaseDate("06/15/71");
+        newMovie.setPrice(0.5);
+        underTest.addMovie(newMovie,1);
+
+        Movie cheaper = new Movie();
+        cheaper.setBarcode("224");
+        cheaper.setTitle("Test");
+        cheaper.setGenre("Drama");
+        cheaper.setReleaseDate("06/15/71");
+        cheaper.setPrice(0.25);
+        underTest.addMovie(cheaper,1);
+
+        Page<Movie> first = underTest.getMoviesByPrice(null, 0.5, null, 1);
+        assertThat(first.getItems().get(0)).isEqualTo(cheaper);
+        assertThat(first.hasNext()).isTrue();
+        Page<Movie> second = underTest.getMoviesByPrice(null, 0.5, first.getNextCursor(), 1);
+        assertThat(second.getItems().get(0)).isEqualTo(newMovie);
+        assertThat(underTest.getMoviesReleasedBetween(LocalDate.of(1971, 6, 1), LocalDate.of(1971, 6, 30),
+                null, 10).getItems().contains(newMovie)).isTrue();
+        assertThat(underTest.getMoviesReleasedBetween(LocalDate.of(1971, 7, 1), LocalDate.of(1971, 12, 31),
+                null, 10).getItems().contains(newMovie)).isFalse();
+
+        // the cursor still works once the movie it ends on is gone
+        underTest.deleteMovie("224");
+        assertThat(underTest.getMoviesByPrice(null, 0.5, first.getNextCursor(), 1).getItems().get(0))
+                .isEqualTo(newMovie);
+
+        underTest.deleteMovie("95");
+        assertThat(underTest.getMoviesByPrice(null, 0.5, null, 10).getItems().contains(newMovie)).isFalse();
+    }
+
+    @Test
+    void testGetMoviesPages() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("94");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Drama");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+        underTest.addMovie(newMovie,1);
+
+        Page<Movie> first = underTest.getMovies(null, 1);
+        assertThat(first.getItems().size()).isEqualTo(1);
+        assertThat(first.getTotal()).isEqualTo(underTest.getAllMovies().size());
+
+        int seen = 0;
+        Page<Movie> page = underTest.getMovies(null, 3);
+        while (true) {
+            seen += page.getItems().size();
+            if (!page.hasNext()) {
+                break;
+            }
+            page = underTest.getMovies(page.getNextCursor(), 3);
+        }
+        assertThat(seen).isEqualTo(first.getTotal());
+
+        underTest.deleteMovie("94");
+    }
+
+    @Test
+    void testLoadKeepsMovieTooLargeForMappedCatalog(@TempDir Path tempDir) throws IOException {
+        String title = new String(new char[193]).replace('\0', 'a');
+        Path csv = tempDir.resolve("movies.csv");
+        Files.write(csv, ("barcode,title,genre,releaseDate,quantity,cost\r\n"
+                + "1,Short,Drama,01/01/01,1,4.99\r\n"
+                + "2," + title + ",Drama,01/01/01,2,9.99\r\n").getBytes(StandardCharsets.UTF_8));
+
+        MovieRepository repository = new MovieRepository(csv.toString(), tempDir.resolve("catalog").toString());
+        try {
+            assertThat(repository.getMovie("1").getTitle()).isEqualTo("Short");
+            assertThat(repository.getMovie("2").getTitle()).isEqualTo(title);
+            assertThat(repository.getStockForMovie("2")).isEqualTo(2);
+            assertThat(repository.getMovieByTitle(title).size()).isEqualTo(1);
+        } finally {
+            WriteBehindFlusher.getInstance().unregister(repository);
+        }
+    }
+
+    @Test
+    void testGetMoviesRejectsEmptyPage() {
+        assertThatThrownBy(() -> underTest.getMovies(null, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> underTest.getMoviesByPrice(null, null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testGetMoviesByPriceRejectsMalformedCursor() {
+        assertThatThrownBy(() -> underTest.getMoviesByPrice(null, null, "92", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> underTest.getMoviesByPrice(null, null, "cheap:92", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testStockChangeNotifiesRow() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("92");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Drama");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+        underTest.addMovie(newMovie,2);
+        List<String> changed = new ArrayList<>();
+        AtomicInteger reloads = new AtomicInteger();
+        Observer observer = new Observer() {
+            @Override
+            public void update() {
+                reloads.incrementAndGet();
+            }
+
+            @Override
+            public void update(String key) {
+                changed.add(key);
+            }
+        };
+        underTest.registerObserver(observer);
+
+        underTest.removeStock("92");
+        underTest.returnMovie("92");
+
+        underTest.removeObserver(observer);
+        underTest.deleteMovie("92");
+        assertThat(changed.toString()).isEqualTo("[92, 92]");
+        assertThat(reloads.get()).isEqualTo(0);
+    }
+
     @Test
     void testGetMovie() {
         Movie newMovie = new Movie();
@@ -278,6 +494,72 @@ class MovieRepositoryTest {
         underTest.deleteMovie("436");
     }
 
+    @Test
+    void testRentMoviesFailureLeavesStock() {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("235");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Kids");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+
+        Movie newMovie2 = new Movie();
+        newMovie2.setBarcode("437");
+        newMovie2.setTitle("Test");
+        newMovie2.setGenre("Kids");
+        newMovie2.setReleaseDate("01/01/01");
+        newMovie2.setPrice(9.99);
+        underTest.addMovie(newMovie,2);
+        underTest.addMovie(newMovie2,2);
+
+        Map<Movie,Integer> map = new HashMap<>();
+        map.put(newMovie,1);
+        map.put(newMovie2,3);
+
+        boolean result = underTest.rentMovies(map);
+        assertThat(result).isEqualTo(false);
+        assertThat(underTest.getStockForMovie("235")).isEqualTo(2);
+        assertThat(underTest.getStockForMovie("437")).isEqualTo(2);
+
+        underTest.deleteMovie("235");
+        underTest.deleteMovie("437");
+    }
+
+    @Test
+    void testConcurrentRentLastCopy() throws InterruptedException {
+        Movie newMovie = new Movie();
+        newMovie.setBarcode("238");
+        newMovie.setTitle("Test");
+        newMovie.setGenre("Kids");
+        newMovie.setReleaseDate("01/01/01");
+        newMovie.setPrice(9.99);
+        underTest.addMovie(newMovie,1);
+
+        Map<Movie,Integer> map = new HashMap<>();
+        map.put(newMovie,1);
+
+        AtomicInteger rented = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                if (underTest.rentMovies(map)) {
+                    rented.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertThat(rented.get()).isEqualTo(1);
+        assertThat(underTest.getStockForMovie("238")).isEqualTo(0);
+
+        underTest.deleteMovie("238");
+    }
+
     @Test
     void testRentMoviesFailureNoMovie() {
         Movie newMovie = new Movie();
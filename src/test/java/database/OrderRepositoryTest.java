@@ -2,8 +2,12 @@ package database;
 
 import model.Movie;
 import model.Order;
+import model.OrderStatus;
 import org.junit.jupiter.api.*;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -88,6 +92,127 @@ class OrderRepositoryTest {
         assertThat(expected).isEqualTo(underTest.getOrdersByCustomer("username"));
     }
 
+    @Test
+    void testChangeUsernameMovesOrders() {
+        for (int id = 501; id <= 502; id++) {
+            Order o = new Order();
+            o.setOrderStatus("PROCESSED");
+            o.setUsername("oldname");
+            o.setOrderId(id);
+            o.setOverdue(false);
+            o.setDueDate("12/12/12");
+            o.setMovies(new HashMap<Movie,Integer>());
+            underTest.createOrder(o);
+        }
+
+        underTest.changeUsername("newname", "oldname");
+
+        assertThat(underTest.getOrdersByCustomer("oldname").isEmpty()).isTrue();
+        assertThat(underTest.getOrdersByCustomer("newname").size()).isEqualTo(2);
+        assertThat(underTest.getOrder(502).getUsername()).isEqualTo("newname");
+
+        underTest.deleteOrder(501);
+        underTest.deleteOrder(502);
+        assertThat(underTest.getOrdersByCustomer("newname").isEmpty()).isTrue();
+    }
+
+    @Test
+    void testGetOrdersWithStatus() {
+        for (int id = 601; id <= 602; id++) {
+            Order o = new Order();
+            o.setOrderStatus("PROCESSED");
+            o.setUsername("username");
+            o.setOrderId(id);
+            o.setOverdue(false);
+            o.setOrderDate("12/12/12");
+            o.setDueDate("12/12/12");
+            o.setMovies(new HashMap<Movie,Integer>());
+            underTest.createOrder(o);
+        }
+
+        underTest.changeOrderStatus(601, OrderStatus.SHIPPED);
+        Order o = underTest.getOrder(602);
+        o.setOrderStatus(OrderStatus.DELIVERED);
+        underTest.updateOrder(602, o);
+
+        assertThat(underTest.getOrdersWithStatus(OrderStatus.PROCESSED).contains(underTest.getOrder(601))).isFalse();
+        assertThat(underTest.getOrdersWithStatus(OrderStatus.PROCESSED).contains(o)).isFalse();
+        assertThat(underTest.getOrdersWithStatus(OrderStatus.SHIPPED).contains(underTest.getOrder(601))).isTrue();
+        assertThat(underTest.getOrdersWithStatus(OrderStatus.DELIVERED).contains(o)).isTrue();
+
+        Order shipped = underTest.getOrder(601);
+        underTest.deleteOrder(601);
+        underTest.deleteOrder(602);
+        assertThat(underTest.getOrdersWithStatus(OrderStatus.SHIPPED).contains(shipped)).isFalse();
+    }
+
+    @Test
+    void testMarkOverdue() {
+        String[] dueDates = {"2020/01/10", "2020/01/20"};
+        for (int i = 0; i < dueDates.length; i++) {
+            Order o = new Order();
+            o.setOrderStatus("DELIVERED");
+            o.setUsername("username");
+            o.setOrderId(701 + i);
+            o.setOverdue(false);
+            o.setOrderDate("2020/01/01");
+            o.setDueDate(dueDates[i]);
+            o.setMovies(new HashMap<Movie,Integer>());
+            underTest.createOrder(o);
+        }
+        long day = LocalDate.of(2020, 1, 15).toEpochDay();
+
+        List<Order> overdue = underTest.markOverdue(day);
+
+        assertThat(overdue.size()).isEqualTo(1);
+        assertThat(overdue.get(0).getOrderId()).isEqualTo(701);
+        assertThat(overdue.get(0).getOverdue()).isTrue();
+        assertThat(underTest.markOverdue(day).isEmpty()).isTrue();
+        assertThat(underTest.getOverdueOrders().contains(overdue.get(0))).isTrue();
+
+        Order returned = underTest.getOrder(701);
+        returned.setDueDate("");
+        returned.setOverdue(false);
+        underTest.returnOrder(returned);
+
+        assertThat(underTest.getOverdueOrders().contains(returned)).isFalse();
+        assertThat(underTest.markOverdue(day).isEmpty()).isTrue();
+
+        underTest.deleteOrder(701);
+        underTest.deleteOrder(702);
+    }
+
+    @Test
+    void testGetOrdersByCustomerPages() {
+        for (int i = 0; i < 3; i++) {
+            Order o = new Order();
+            o.setOrderStatus("PROCESSED");
+            o.setUsername("pager");
+            o.setOrderId(801 + i);
+            o.setOverdue(false);
+            o.setDueDate("");
+            o.setMovies(new HashMap<Movie,Integer>());
+            underTest.createOrder(o);
+        }
+
+        Page<Order> first = underTest.getOrdersByCustomer("pager", null, 2);
+        assertThat(first.getItems().size()).isEqualTo(2);
+        assertThat(first.getItems().get(0).getOrderId()).isEqualTo(801);
+        assertThat(first.getNextCursor()).isEqualTo("802");
+        assertThat(first.getTotal()).isEqualTo(3);
+
+        Page<Order> second = underTest.getOrdersByCustomer("pager", first.getNextCursor(), 2);
+        assertThat(second.getItems().size()).isEqualTo(1);
+        assertThat(second.getItems().get(0).getOrderId()).isEqualTo(803);
+        assertThat(second.hasNext()).isFalse();
+
+        assertThat(underTest.getOrders("802", 1).getItems().get(0).getOrderId()).isEqualTo(803);
+
+        for (int i = 0; i < 3; i++) {
+            underTest.deleteOrder(801 + i);
+        }
+    }
+
     @Test
     void testGetOrder() {
         Order o = underTest.getOrder(99);
@@ -134,6 +259,24 @@ class OrderRepositoryTest {
         assertThat(result).isFalse();
     }
 
+    @Test
+    void testLoadSkipsUnknownStatus() throws IOException {
+        try (FileWriter fw = new FileWriter(TestConfigs.ORDER_CSV__TEST_PATH, false)) {
+            fw.write("orderNumber,username,orderStatus,orderDate,dueDate,isOverdue\r\n");
+            fw.write("901,statususer,shipped,01/01/21,12/12/21,false\r\n");
+            fw.write("902,statususer,LOST,01/01/21,12/12/21,false\r\n");
+            fw.write("903,statususer,DELIVERED,01/01/21,12/12/21,false\r\n");
+        }
+        underTest.loadCSV();
+
+        assertThat(underTest.getOrder(901).getOrderStatus()).isEqualTo(OrderStatus.SHIPPED);
+        assertThat(underTest.getOrder(902)).isNull();
+        assertThat(underTest.getOrder(903).getOrderStatus()).isEqualTo(OrderStatus.DELIVERED);
+
+        underTest.cancelOrder(901);
+        underTest.cancelOrder(903);
+    }
+
     @Test
     void testReturnOrder() {
         underTest.returnOrder(new Order());
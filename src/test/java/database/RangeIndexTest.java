@@ -0,0 +1,56 @@
+package database;
+
+import model.Movie;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class RangeIndexTest {
+
+    private RangeIndex<Double> index() {
+        RangeIndex<Double> underTest = new RangeIndex<>(Movie::getPrice);
+        underTest.add(movie("1", "Title 1", "Drama", "01/01/11", 2.99));
+        underTest.add(movie("2", "Title 2", "Drama", "01/01/11", 4.99));
+        underTest.add(movie("3", "Title 3", "Drama", "01/01/11", 4.99));
+        underTest.add(movie("4", "Title 4", "Drama", "01/01/11", 7.99));
+        underTest.add(movie("5", "Title 5", "Drama", "01/01/11", 12.99));
+        return underTest;
+    }
+
+    @Test
+    void testRange() {
+        RangeIndex<Double> underTest = index();
+
+        assertThat(underTest.range(null, 4.99, null, 10).toString()).isEqualTo("[1, 2, 3]");
+        assertThat(underTest.range(4.99, 10.0, null, 10).toString()).isEqualTo("[2, 3, 4]");
+        assertThat(underTest.range(8.0, null, null, 10).toString()).isEqualTo("[5]");
+        assertThat(underTest.range(20.0, null, null, 10).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testPages() {
+        RangeIndex<Double> underTest = index();
+        List<String> first = underTest.range(null, 10.0, null, 2);
+        List<String> second = underTest.range(null, 10.0, movie("2", "Title 2", "Drama", "01/01/11", 4.99), 2);
+        List<String> third = underTest.range(null, 10.0, movie("4", "Title 4", "Drama", "01/01/11", 7.99), 2);
+
+        assertThat(first.toString()).isEqualTo("[1, 2]");
+        assertThat(second.toString()).isEqualTo("[3, 4]");
+        assertThat(third.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testPageAfterRemovedMovie() {
+        RangeIndex<Double> underTest = index();
+        underTest.remove(movie("2", "Title 2", "Drama", "01/01/11", 4.99));
+
+        assertThat(underTest.range(null, null, movie("2", "Title 2", "Drama", "01/01/11", 4.99), 2).toString())
+                .isEqualTo("[3, 4]");
+        // a cursor below the lower bound starts at the bound
+        assertThat(underTest.range(7.0, null, movie("1", "Title 1", "Drama", "01/01/11", 2.99), 2).toString())
+                .isEqualTo("[4, 5]");
+    }
+}
@@ -0,0 +1,28 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class ReleaseDatesTest {
+
+    @Test
+    void testYear() {
+        assertThat(ReleaseDates.year("05/22/09")).isEqualTo(2009);
+        assertThat(ReleaseDates.year("07/11/98")).isEqualTo(1998);
+        assertThat(ReleaseDates.year("01/131/13")).isEqualTo(2013);
+        assertThat(ReleaseDates.year("2013")).isNull();
+    }
+
+    @Test
+    void testEpochDay() {
+        assertThat(ReleaseDates.epochDay("05/22/09")).isEqualTo((int) LocalDate.of(2009, 5, 22).toEpochDay());
+        assertThat(ReleaseDates.epochDay("07/11/98")).isEqualTo((int) LocalDate.of(1998, 7, 11).toEpochDay());
+        assertThat(ReleaseDates.epochDay("14/22/09")).isNull();
+        assertThat(ReleaseDates.epochDay("04/31/03")).isNull();
+        assertThat(ReleaseDates.epochDay("01/131/13")).isNull();
+        assertThat(ReleaseDates.epochDay(null)).isNull();
+    }
+}
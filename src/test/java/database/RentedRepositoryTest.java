@@ -114,4 +114,47 @@ class RentedRepositoryTest {
 
         assertThat(underTest.countMoviesInOrder(23)).isEqualTo(5);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getRentedMoviesInOrder() {
+        Movie m = new Movie();
+        m.setReleaseDate("13/131/3");
+        m.setGenre("Kids");
+        m.setPrice(2);
+        m.setTitle("Pokemon");
+        m.setBarcode("21");
+
+        Movie m2 = new Movie();
+        m2.setReleaseDate("13/131/3");
+        m2.setGenre("Kids");
+        m2.setPrice(3);
+        m2.setTitle("Digimon");
+        m2.setBarcode("22");
+
+        Map<Movie,Integer> movies = new HashMap<>();
+        movies.put(m,5);
+        movies.put(m2,1);
+
+        Order order = new Order();
+        order.setMovies(movies);
+        order.setOrderStatus("DELIVERED");
+        order.setOrderDate("/121/21");
+        order.setOrderId(24);
+        order.setUsername("username");
+        order.setDueDate("11/2214/1");
+        order.setOverdue(false);
+
+        underTest.storeMovies(order);
+
+        List<RentedMovie> rows = underTest.getRentedMoviesInOrder(24);
+        assertThat(rows.size()).isEqualTo(2);
+        assertThat(rows.contains(new RentedMovie(24, "21", 5))).isTrue();
+        assertThat(rows.contains(new RentedMovie(24, "22", 1))).isTrue();
+        assertThat(underTest.countMoviesInOrder(24)).isEqualTo(6);
+
+        underTest.deleteRentedMoviesFromOrder(24);
+
+        assertThat(underTest.getRentedMoviesInOrder(24).isEmpty()).isTrue();
+        assertThat(underTest.countMoviesInOrder(24)).isEqualTo(0);
+    }
+}
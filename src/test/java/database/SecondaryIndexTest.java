@@ -0,0 +1,46 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class SecondaryIndexTest {
+
+    @Test
+    void testPutMovesBetweenBuckets() {
+        SecondaryIndex<String> underTest = new SecondaryIndex<>();
+        underTest.put(3, "alice");
+        underTest.put(1, "alice");
+        underTest.put(2, "bob");
+
+        assertThat(underTest.get("alice").toString()).isEqualTo("[1, 3]");
+
+        underTest.put(3, "bob");
+
+        assertThat(underTest.get("alice").toString()).isEqualTo("[1]");
+        assertThat(underTest.get("bob").toString()).isEqualTo("[2, 3]");
+        assertThat(underTest.keyOf(3)).isEqualTo("bob");
+    }
+
+    @Test
+    void testRemove() {
+        SecondaryIndex<String> underTest = new SecondaryIndex<>();
+        underTest.put(1, "alice");
+        underTest.remove(1);
+        underTest.remove(2);
+
+        assertThat(underTest.get("alice").isEmpty()).isTrue();
+        assertThat(underTest.keyOf(1)).isNull();
+    }
+
+    @Test
+    void testSortedIdsUpTo() {
+        SecondaryIndex<Long> underTest = SecondaryIndex.sorted();
+        underTest.put(1, 30L);
+        underTest.put(2, 10L);
+        underTest.put(3, 20L);
+
+        assertThat(underTest.idsUpTo(20L).toString()).isEqualTo("[2, 3]");
+        assertThat(underTest.idsUpTo(5L).isEmpty()).isTrue();
+    }
+}
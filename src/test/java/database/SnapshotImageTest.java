@@ -0,0 +1,89 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class SnapshotImageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path csv;
+
+    private Journal journal;
+
+    private SnapshotImage underTest;
+
+    @BeforeEach
+    void setup() throws IOException {
+        csv = tempDir.resolve("movies.csv");
+        Files.write(csv, "barcode,title\n".getBytes());
+        journal = new Journal(csv.toString());
+        underTest = new SnapshotImage(journal, csv.toString());
+        SnapshotImage.setEnabled(true);
+    }
+
+    @AfterEach
+    void teardown() {
+        SnapshotImage.setEnabled(false);
+    }
+
+    @Test
+    void testLoadReplaysJournalTail() {
+        journal.log("PUT", "1");
+        underTest.save(out -> {
+            out.writeInt(1);
+            SnapshotImage.writeString(out, null);
+        });
+        journal.log("PUT", "2");
+        journal.flush();
+
+        List<String> state = new ArrayList<>();
+        List<String> replayed = new ArrayList<>();
+        boolean loaded = underTest.load(in -> {
+            state.add(String.valueOf(in.readInt()));
+            state.add(SnapshotImage.readString(in));
+        }, r -> replayed.add(r.get(1)));
+
+        assertThat(loaded).isTrue();
+        assertThat(state.toString()).isEqualTo("[1, null]");
+        assertThat(replayed.toString()).isEqualTo("[2]");
+        assertThat(journal.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testStaleWhenCsvChanges() throws IOException {
+        underTest.save(out -> out.writeInt(1));
+        Files.write(csv, "barcode,title\n1,Test\n".getBytes());
+
+        assertThat(underTest.load(in -> in.readInt(), r -> {})).isFalse();
+    }
+
+    @Test
+    void testStaleWhenJournalTruncated() {
+        journal.log("PUT", "1");
+        underTest.save(out -> out.writeInt(1));
+        journal.truncate();
+
+        assertThat(underTest.load(in -> in.readInt(), r -> {})).isFalse();
+    }
+
+    @Test
+    void testDisabled() {
+        SnapshotImage.setEnabled(false);
+        underTest.save(out -> out.writeInt(1));
+
+        assertThat(underTest.load(in -> in.readInt(), r -> {})).isFalse();
+        assertThat(Files.exists(tempDir.resolve("movies.csv.img"))).isFalse();
+    }
+}
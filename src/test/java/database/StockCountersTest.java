@@ -0,0 +1,81 @@
+package database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class StockCountersTest {
+
+    private StockCounters underTest;
+
+    @BeforeEach
+    void setup() {
+        underTest = new StockCounters();
+    }
+
+    @Test
+    void testTakeNeverGoesBelowZero() {
+        underTest.register("1", 2);
+
+        assertThat(underTest.take("1", 3)).isFalse();
+        assertThat(underTest.take("1", 2)).isTrue();
+        assertThat(underTest.take("1", 1)).isFalse();
+        assertThat(underTest.get("1")).isEqualTo(0);
+    }
+
+    @Test
+    void testUnknownBarcode() {
+        assertThat(underTest.take("1", 1)).isFalse();
+        assertThat(underTest.give("1", 1)).isFalse();
+        assertThat(underTest.get("1")).isEqualTo(0);
+    }
+
+    @Test
+    void testRemovedBarcodeGetsNewCounter() {
+        underTest.register("1", 5);
+        underTest.remove("1");
+        underTest.register("1", 1);
+
+        assertThat(underTest.get("1")).isEqualTo(1);
+    }
+
+    @Test
+    void testGrowsPastOneSegment() {
+        for (int i = 0; i < 10000; i++) {
+            underTest.register("BC" + i, i);
+        }
+
+        assertThat(underTest.get("BC0")).isEqualTo(0);
+        assertThat(underTest.get("BC9999")).isEqualTo(9999);
+    }
+
+    @Test
+    void testConcurrentLastCopy() throws InterruptedException {
+        underTest.register("1", 10);
+        AtomicInteger taken = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    if (underTest.take("1", 1)) {
+                        taken.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertThat(taken.get()).isEqualTo(10);
+        assertThat(underTest.get("1")).isEqualTo(0);
+    }
+}
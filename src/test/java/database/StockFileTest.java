@@ -0,0 +1,70 @@
+package database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class StockFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private StockFile underTest;
+
+    @BeforeEach
+    void setup() {
+        underTest = new StockFile(tempDir.resolve("movies.csv").toString());
+    }
+
+    private Map<String, Integer> reload() {
+        Map<String, Integer> stock = new HashMap<>();
+        new StockFile(tempDir.resolve("movies.csv").toString()).load(stock::put);
+        return stock;
+    }
+
+    @Test
+    void testWriteInPlace() throws IOException {
+        underTest.write("1", 5);
+        underTest.write("2", 3);
+        underTest.write("1", 4);
+
+        Map<String, Integer> stock = reload();
+        assertThat(stock.get("1")).isEqualTo(4);
+        assertThat(stock.get("2")).isEqualTo(3);
+        assertThat(Files.size(tempDir.resolve("movies.csv.stock"))).isEqualTo(2L * StockFile.SLOT_SIZE);
+    }
+
+    @Test
+    void testRemoveFreesSlot() throws IOException {
+        underTest.write("1", 5);
+        underTest.write("2", 3);
+        underTest.remove("1");
+        underTest.write("3", 7);
+
+        Map<String, Integer> stock = reload();
+        assertThat(stock.containsKey("1")).isFalse();
+        assertThat(stock.get("3")).isEqualTo(7);
+        assertThat(Files.size(tempDir.resolve("movies.csv.stock"))).isEqualTo(2L * StockFile.SLOT_SIZE);
+    }
+
+    @Test
+    void testLongBarcodeNeedsFallback() {
+        assertThat(underTest.write("012345678901234567890123456789012345678901234567890", 1)).isFalse();
+    }
+
+    @Test
+    void testClear() {
+        underTest.write("1", 5);
+        underTest.clear();
+
+        assertThat(reload().isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,17 @@
+package database;
+
+import model.Movie;
+
+public class TestMovies {
+
+    public static Movie movie(String barcode, String title, String genre, String releaseDate, double price) {
+        Movie m = new Movie();
+        m.setBarcode(barcode);
+        m.setTitle(title);
+        m.setGenre(genre);
+        m.setReleaseDate(releaseDate);
+        m.setPrice(price);
+        return m;
+    }
+
+}
@@ -0,0 +1,50 @@
+package database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class TextIndexTest {
+
+    private TextIndex underTest;
+
+    @BeforeEach
+    void setup() {
+        underTest = new TextIndex();
+        underTest.add(movie("1", "The Dark Knight", "Action", "07/18/08", 9.99));
+        underTest.add(movie("2", "Dark Shadows", "Comedy", "05/11/12", 9.99));
+        underTest.add(movie("3", "This Is the End", "Comedy", "06/12/13", 9.99));
+        underTest.add(movie("4", "Frozen", "Kids", "11/27/13", 9.99));
+        underTest.add(movie("5", "Psycho", "Horror", "06/16/60", 9.99));
+    }
+
+    @Test
+    void testMultiWordQueryIsRanked() {
+        List<String> result = underTest.search("dark comedy 2013", 10);
+
+        // 2 and 3 both match two terms, the shorter movie scores higher
+        assertThat(result.get(0)).isEqualTo("2");
+        assertThat(result.size()).isEqualTo(4);
+        assertThat(result.contains("5")).isFalse();
+    }
+
+    @Test
+    void testTwoDigitYears() {
+        assertThat(underTest.search("1960", 10).toString()).isEqualTo("[5]");
+        assertThat(underTest.search("2008", 10).toString()).isEqualTo("[1]");
+    }
+
+    @Test
+    void testLimitAndRemove() {
+        assertThat(underTest.search("comedy", 1).size()).isEqualTo(1);
+
+        underTest.remove(movie("2", "Dark Shadows", "Comedy", "05/11/12", 9.99));
+
+        assertThat(underTest.search("shadows", 10).isEmpty()).isTrue();
+        assertThat(underTest.search("dark", 10).toString()).isEqualTo("[1]");
+    }
+}
@@ -0,0 +1,79 @@
+package database;
+
+import model.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static database.TestMovies.movie;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class TitleIndexTest {
+
+    private TitleIndex underTest;
+
+    private Map<String, String> titles;
+
+    private void add(Movie movie) {
+        titles.put(movie.getBarcode(), movie.getTitle());
+        underTest.add(movie);
+    }
+
+    @BeforeEach
+    void setup() {
+        titles = new HashMap<>();
+        underTest = new TitleIndex(titles::get);
+        add(movie("1", "Crazy, Stupid, Love", "Comedy", "01/01/11", 9.99));
+        add(movie("2", "(500) Days of Summer", "Comedy", "01/01/11", 9.99));
+        add(movie("3", "Love Actually", "Comedy", "01/01/11", 9.99));
+    }
+
+    @Test
+    void testSubstringIgnoringCase() {
+        assertThat(underTest.search("LOVE").size()).isEqualTo(2);
+        assertThat(underTest.search("stupid, l").contains("1")).isTrue();
+        assertThat(underTest.search("actually love").isEmpty()).isTrue();
+    }
+
+    @Test
+    void testQueryIsLiteral() {
+        assertThat(underTest.search("(500)").contains("2")).isTrue();
+        assertThat(underTest.search(".*").isEmpty()).isTrue();
+    }
+
+    @Test
+    void testShortQuery() {
+        assertThat(underTest.search("of").contains("2")).isTrue();
+        assertThat(underTest.search("").size()).isEqualTo(3);
+    }
+
+    @Test
+    void testRemove() {
+        underTest.remove(movie("3", "Love Actually", "Comedy", "01/01/11", 9.99));
+
+        assertThat(underTest.search("love").size()).isEqualTo(1);
+        assertThat(underTest.search("actually").isEmpty()).isTrue();
+    }
+
+    @Test
+    void testFuzzySearchRanksClosestFirst() {
+        add(movie("4", "Deadpool", "Comedy", "01/01/11", 9.99));
+        add(movie("5", "Deadpool 2", "Comedy", "01/01/11", 9.99));
+
+        List<String> result = underTest.fuzzySearch("dedpool", 10);
+
+        assertThat(result.get(0)).isEqualTo("4");
+        assertThat(result.get(1)).isEqualTo("5");
+        assertThat(result.contains("3")).isFalse();
+    }
+
+    @Test
+    void testFuzzySearchLimit() {
+        assertThat(underTest.fuzzySearch("love", 1).size()).isEqualTo(1);
+        assertThat(underTest.fuzzySearch("love", 0).isEmpty()).isTrue();
+        assertThat(underTest.fuzzySearch("zzzz", 5).isEmpty()).isTrue();
+    }
+}
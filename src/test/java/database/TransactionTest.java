@@ -0,0 +1,84 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class TransactionTest {
+
+    @Test
+    void testRollbackRunsNewestFirst() {
+        List<Integer> undone = new ArrayList<>();
+        try (Transaction tx = Transaction.begin()) {
+            tx.onRollback(() -> undone.add(1));
+            tx.onRollback(() -> undone.add(2));
+            tx.onRollback(() -> {
+                throw new IllegalStateException("undo failed");
+            });
+            tx.onRollback(() -> undone.add(3));
+        }
+
+        assertThat(undone.toString()).isEqualTo("[3, 2, 1]");
+        assertThat(Transaction.current()).isNull();
+    }
+
+    @Test
+    void testCommitKeepsChanges() {
+        List<Integer> undone = new ArrayList<>();
+        try (Transaction tx = Transaction.begin()) {
+            tx.onRollback(() -> undone.add(1));
+            tx.commit();
+        }
+
+        assertThat(undone.isEmpty()).isTrue();
+        assertThat(Transaction.current()).isNull();
+    }
+
+    @Test
+    void testNestedBeginFails() {
+        try (Transaction tx = Transaction.begin()) {
+            assertThat(Transaction.current()).isSameAs(tx);
+            assertThatThrownBy(Transaction::begin).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void testFlushWaitsForOpenTransaction() throws InterruptedException {
+        List<String> events = new ArrayList<>();
+        DatabaseAccess table = new DatabaseAccess() {
+            @Override
+            public void updateCSV() {
+                synchronized (events) {
+                    events.add("flush");
+                }
+            }
+
+            @Override
+            public void loadCSV() {
+            }
+
+            @Override
+            public void clearCSV() {
+            }
+        };
+        Thread flusher;
+        try (Transaction tx = Transaction.begin()) {
+            table.markDirty();
+            flusher = new Thread(() -> WriteBehindFlusher.getInstance().flush());
+            flusher.start();
+            flusher.join(200);
+            synchronized (events) {
+                events.add("commit");
+            }
+            tx.commit();
+        }
+        flusher.join();
+
+        assertThat(events.get(0)).isEqualTo("commit");
+        assertThat(events.contains("flush")).isTrue();
+    }
+}
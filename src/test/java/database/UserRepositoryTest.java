@@ -53,6 +53,31 @@ class UserRepositoryTest {
         assertThat(expected).isEqualTo(underTest.getAllCustomers());
     }
 
+    @Test
+    void testGetCustomersPages() {
+        for (int i = 1; i <= 3; i++) {
+            User u = new User();
+            u.setUsername("pageuser" + i);
+            u.setPassword("password");
+            u.setEmailAddress("pageuser" + i + "@mail.com");
+            u.setAccountType("customer");
+            underTest.register(u);
+        }
+
+        Page<User> first = underTest.getCustomers("pageuser", 2);
+        assertThat(first.getItems().get(0).getUsername()).isEqualTo("pageuser1");
+        assertThat(first.getItems().get(1).getUsername()).isEqualTo("pageuser2");
+        assertThat(first.getNextCursor()).isEqualTo("pageuser2");
+        assertThat(first.getTotal() >= 3).isTrue();
+
+        Page<User> second = underTest.getCustomers(first.getNextCursor(), 1);
+        assertThat(second.getItems().get(0).getUsername()).isEqualTo("pageuser3");
+
+        for (int i = 1; i <= 3; i++) {
+            underTest.deleteUser("pageuser" + i);
+        }
+    }
+
     @Test
     void testUpdateUser() {
         User u = new User();
@@ -0,0 +1,48 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class WriteBehindFlusherTest {
+
+    private static class CountingTable implements DatabaseAccess {
+
+        private int writes;
+
+        @Override
+        public synchronized void updateCSV() {
+            writes++;
+        }
+
+        @Override
+        public void loadCSV() {
+        }
+
+        @Override
+        public void clearCSV() {
+        }
+    }
+
+    @Test
+    void testBurstIsCoalesced() {
+        CountingTable table = new CountingTable();
+        for (int i = 0; i < 100; i++) {
+            table.markDirty();
+        }
+
+        WriteBehindFlusher.getInstance().flush();
+
+        assertThat(table.writes).isEqualTo(1);
+    }
+
+    @Test
+    void testFlushWithoutChanges() {
+        CountingTable table = new CountingTable();
+        table.markDirty();
+        WriteBehindFlusher.getInstance().flush();
+        WriteBehindFlusher.getInstance().flush();
+
+        assertThat(table.writes).isEqualTo(1);
+    }
+}
@@ -112,6 +112,43 @@ class OrderServiceTest {
         assertThat(orderService.createOrder(cart,c)).isNotNull();
     }
 
+    @Test
+    void testCreateOrderOutOfStockRefundsPayment() {
+        Movie m = new Movie();
+        m.setReleaseDate("13/131/3");
+        m.setGenre("Kids");
+        m.setPrice(2);
+        m.setTitle("Pokemon");
+        m.setBarcode("31");
+
+        Address a = new Address();
+        a.setUsername("username");
+        a.setCity("toronto");
+        a.setProvince("ontario");
+        a.setPostalCode("394823");
+        a.setLineAddress("110 drift");
+
+        CreditCard c = new CreditCard();
+        c.setUsername("username");
+        c.setBalance(0);
+        c.setCardNumber("392482934");
+        c.setExpiry("01/13");
+        c.setCsv("23492834");
+
+        billingService.saveCreditCard(c);
+        addressService.saveAddress(a);
+        movieService.addMovie(m,2);
+
+        Cart cart = new Cart();
+        cart.setUsername("username");
+        int stock = movieService.getStockForMovie("31");
+        cart.addMovieToCart(m,stock + 1);
+
+        assertThat(orderService.createOrder(cart,c)).isNull();
+        assertThat(billingService.getCreditCard("username").getBalance()).isEqualTo(0.0);
+        assertThat(movieService.getStockForMovie("31")).isEqualTo(stock);
+    }
+
     @Test
     void testChangeOrderStatus() {
         Movie m = new Movie();